@@ -0,0 +1,152 @@
+package bench;
+
+import game.ChessBoard;
+import game.ChessGame;
+import game.Fen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pieces.Piece;
+import utils.PieceColor;
+import utils.Position;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmarks for the hot paths of the game, run over each phase of a fixed corpus of positions.
+// Build with mvn package, then: java -jar bench/target/benchmarks.jar [regex] [JMH options]
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ChessBenchmark {
+    private static final String[][] CORPUS = {
+            { "opening", Fen.START_POSITION },
+            { "opening", "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3" },
+            { "opening", "r1bqk1nr/pppp1ppp/2n5/2b1p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4" },
+            { "middlegame", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1" },
+            { "middlegame", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10" },
+            { "middlegame", "r2q1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1BN2/PP3PPP/R2QKB1R w KQ - 0 9" },
+            { "endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1" },
+            { "endgame", "8/5pk1/6p1/8/8/6P1/5PK1/8 w - - 0 1" },
+            { "endgame", "8/8/4k3/8/2K5/8/3Q4/8 w - - 0 1" },
+    };
+
+    @Param({ "opening", "middlegame", "endgame" })
+    public String phase;
+
+    private final List<ChessGame> games = new ArrayList<>();
+    private final List<List<Position>> ownPieces = new ArrayList<>();
+    private final List<List<Piece>> allPieces = new ArrayList<>();
+    private final Position[] targets = new Position[64];
+    private ChessBoard moveBoard;
+    private PrintStream out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // The game still logs to System.out (Pawn.isValidMove in particular), so silence it while measuring
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        for (String[] entry : CORPUS) {
+            if (!entry[0].equals(phase)) {
+                continue;
+            }
+            ChessGame game = new ChessGame(entry[1]);
+            games.add(game);
+
+            List<Position> own = new ArrayList<>();
+            List<Piece> pieces = new ArrayList<>();
+            for (int row = 0; row < 8; row++) {
+                for (int col = 0; col < 8; col++) {
+                    Piece piece = game.getBoard().getPiece(row, col);
+                    if (piece != null) {
+                        pieces.add(piece);
+                        if (piece.getColor() == game.getCurrentPlayerColor()) {
+                            own.add(new Position(row, col));
+                        }
+                    }
+                }
+            }
+            ownPieces.add(own);
+            allPieces.add(pieces);
+        }
+        for (int i = 0; i < 64; i++) {
+            targets[i] = new Position(i / 8, i % 8);
+        }
+        moveBoard = new ChessBoard();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public void getLegalMovesForPieceAt(Blackhole blackhole) {
+        for (int i = 0; i < games.size(); i++) {
+            ChessGame game = games.get(i);
+            for (Position position : ownPieces.get(i)) {
+                blackhole.consume(game.getLegalMovesForPieceAt(position));
+            }
+        }
+    }
+
+    @Benchmark
+    public void isInCheck(Blackhole blackhole) {
+        for (ChessGame game : games) {
+            blackhole.consume(game.isInCheck(PieceColor.WHITE));
+            blackhole.consume(game.isInCheck(PieceColor.BLACK));
+        }
+    }
+
+    @Benchmark
+    public void isCheckMate(Blackhole blackhole) {
+        for (ChessGame game : games) {
+            blackhole.consume(game.isCheckMate(game.getCurrentPlayerColor()));
+        }
+    }
+
+    @Benchmark
+    public void isStalemate(Blackhole blackhole) {
+        for (ChessGame game : games) {
+            blackhole.consume(game.isStalemate(game.getCurrentPlayerColor()));
+        }
+    }
+
+    // Knight g1-f3 and back on the start position, so the board is unchanged after every call
+    @Benchmark
+    public Piece movePiece() {
+        moveBoard.movePiece(targets[62], targets[45]);
+        moveBoard.movePiece(targets[45], targets[62]);
+        return moveBoard.getPiece(7, 6);
+    }
+
+    @Benchmark
+    public void isValidMove(Blackhole blackhole) {
+        for (int i = 0; i < games.size(); i++) {
+            Piece[][] board = games.get(i).getBoard().getBoard();
+            for (Piece piece : allPieces.get(i)) {
+                for (Position target : targets) {
+                    blackhole.consume(piece.isValidMove(target, board));
+                }
+            }
+        }
+    }
+}
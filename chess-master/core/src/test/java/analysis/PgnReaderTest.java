@@ -0,0 +1,63 @@
+package analysis;
+
+import game.BitBoard;
+import game.Fen;
+import game.Move;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PgnReaderTest {
+    private static final String PGN = """
+            [Event "Comments and variations"]
+            [White "A"]
+            [Black "B"]
+
+            1. e4 {best by test} e5 2. Nf3 (2. f4 exf4) Nc6 $1 3. Bb5 a6 4.Ba4 Nf6 5. O-O 1-0
+
+            [Event "Illegal move"]
+
+            1. e4 e5 2. Ke3 1/2-1/2
+
+            % escaped line
+            [Event "From a position"]
+            [FEN "4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1"]
+
+            1. exd6 Kd7 2. Kd2 Kxd6 ; rest of line
+            *
+            """;
+
+    @Test
+    void readsGamesAndSkipsMalformedOnes() throws IOException {
+        try (PgnReader reader = new PgnReader(Channels.newChannel(
+                new ByteArrayInputStream(PGN.getBytes(StandardCharsets.UTF_8))))) {
+            PgnGame first = reader.next();
+            assertEquals("Comments and variations", first.getTag("Event"));
+            assertEquals("1-0", first.getResult());
+            assertEquals(9, first.getMoveCount());
+            assertEquals("e2e4", Move.toString(first.getMove(0)));
+            assertEquals("e1g1", Move.toString(first.getMove(8)));
+
+            PgnGame second = reader.next();
+            assertEquals("From a position", second.getTag("Event"));
+            assertEquals("*", second.getResult());
+            assertEquals(4, second.getMoveCount());
+            BitBoard bits = new BitBoard();
+            Fen.load(second.getStartPosition(), bits);
+            for (int i = 0; i < second.getMoveCount(); i++) {
+                bits.make(second.getMove(i));
+            }
+            assertEquals("8/8/3k4/8/8/8/3K4/8 w - - 0 3", Fen.toFen(bits));
+
+            assertNull(reader.next());
+            assertEquals(3, reader.getGamesRead());
+            assertEquals(1, reader.getGamesSkipped());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package analysis;
+
+import engine.Tablebase;
+import game.BitBoard;
+import game.Fen;
+import game.Move;
+import game.MoveGenerator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TablebaseTest {
+    @TempDir
+    static Path directory;
+
+    private static Tablebase tablebase;
+
+    @BeforeAll
+    static void generate() throws IOException {
+        TablebaseGenerator generator = new TablebaseGenerator(directory, 2);
+        for (String material : new String[] { "KQK", "KRK", "KPK" }) {
+            generator.generate(material);
+        }
+        tablebase = new Tablebase(directory);
+    }
+
+    @Test
+    void knownResults() {
+        assertEquals(0, dtm("7k/6Q1/6K1/8/8/8/8/8 b - - 0 1"));
+        assertEquals(1, dtm("7k/8/6K1/8/8/8/8/5Q2 w - - 0 1"));
+        assertEquals(Tablebase.NO_MATE, dtm("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1"));
+        assertEquals(Tablebase.NO_MATE, dtm("7k/8/8/8/8/8/7P/7K w - - 0 1"));
+        assertEquals(Tablebase.WIN, wdl("8/8/8/4k3/8/8/8/KQ6 w - - 0 1"));
+        assertEquals(Tablebase.LOSS, wdl("7k/8/8/8/8/8/8/KR6 b - - 0 1"));
+        assertEquals(Tablebase.DRAW, wdl("4k3/8/8/8/8/8/8/4K3 w - - 0 1"));
+        assertEquals(Tablebase.UNKNOWN, wdl("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1"));
+        assertEquals(Tablebase.DRAW, wdl("4k3/8/8/8/8/8/8/2B1K3 w - - 0 1"));
+        assertEquals(Tablebase.UNKNOWN, wdl("4k3/8/8/8/8/8/r7/KQ6 w - - 0 1"));
+    }
+
+    // Each position's distance to mate must follow from the distances after its moves, for random placements
+    // of every generated material set with either side to move
+    @Test
+    void distancesAgreeWithTheMovesFromEachPosition() {
+        Random random = new Random(19);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        String[] extras = { "Q", "R", "P", "q", "r", "p" };
+        int checked = 0;
+        while (checked < 3000) {
+            BitBoard bits = randomPosition(random, extras[random.nextInt(extras.length)]);
+            if (bits == null) {
+                continue;
+            }
+            int dtm = tablebase.probeDtm(bits);
+            assertNotEquals(Tablebase.UNKNOWN, dtm, Fen.toFen(bits));
+            int count = MoveGenerator.generate(bits, bits.sideToMove(), moves);
+            int fastestWin = Integer.MAX_VALUE;
+            int slowestLoss = -1;
+            boolean drawn = false;
+            for (int i = 0; i < count; i++) {
+                bits.make(moves[i]);
+                int after = tablebase.probeDtm(bits);
+                bits.unmake();
+                assertNotEquals(Tablebase.UNKNOWN, after, Move.toString(moves[i]));
+                if (after == Tablebase.NO_MATE) {
+                    drawn = true;
+                } else if (after % 2 == 0) {
+                    fastestWin = Math.min(fastestWin, after + 1);
+                } else {
+                    slowestLoss = Math.max(slowestLoss, after + 1);
+                }
+            }
+            int expected;
+            if (count == 0) {
+                expected = bits.isInCheck(bits.sideToMove()) ? 0 : Tablebase.NO_MATE;
+            } else if (fastestWin != Integer.MAX_VALUE) {
+                expected = fastestWin;
+            } else if (drawn) {
+                expected = Tablebase.NO_MATE;
+            } else {
+                expected = slowestLoss;
+            }
+            assertEquals(expected, dtm, Fen.toFen(bits));
+            int wdl = tablebase.probeWdl(bits);
+            assertEquals(dtm == Tablebase.NO_MATE ? Tablebase.DRAW : dtm % 2 == 1 ? Tablebase.WIN : Tablebase.LOSS, wdl);
+            checked++;
+        }
+    }
+
+    // The best move always wins the won KQK and KRK positions, within the distance the table promises
+    @Test
+    void bestMovesMate() {
+        for (String fen : new String[] { "8/8/8/4k3/8/8/8/KQ6 w - - 0 1", "8/8/8/8/3k4/8/8/R3K3 w - - 0 1" }) {
+            BitBoard bits = new BitBoard();
+            Fen.load(fen, bits);
+            int dtm = tablebase.probeDtm(bits);
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int plies = 0;
+            while (MoveGenerator.generate(bits, bits.sideToMove(), moves) > 0) {
+                bits.make(tablebase.bestMove(bits));
+                plies++;
+            }
+            assertTrue(bits.isInCheck(bits.sideToMove()), fen);
+            assertEquals(dtm, plies, fen);
+        }
+    }
+
+    private static int dtm(String fen) {
+        BitBoard bits = new BitBoard();
+        Fen.load(fen, bits);
+        return tablebase.probeDtm(bits);
+    }
+
+    private static int wdl(String fen) {
+        BitBoard bits = new BitBoard();
+        Fen.load(fen, bits);
+        return tablebase.probeWdl(bits);
+    }
+
+    // Two kings and one extra piece on distinct random squares, or null if Fen.load refuses the placement
+    private static BitBoard randomPosition(Random random, String extra) {
+        char[] squares = new char[64];
+        String pieces = "Kk" + extra;
+        for (int i = 0; i < pieces.length(); i++) {
+            int square;
+            do {
+                square = random.nextInt(64);
+            } while (squares[square] != 0);
+            squares[square] = pieces.charAt(i);
+        }
+        StringBuilder fen = new StringBuilder();
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                char c = squares[row * 8 + col];
+                if (c == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(c);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            fen.append(row < 7 ? "/" : "");
+        }
+        fen.append(random.nextBoolean() ? " w - - 0 1" : " b - - 0 1");
+        BitBoard bits = new BitBoard();
+        try {
+            Fen.load(fen.toString(), bits);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,63 @@
+package engine;
+
+import game.BitBoard;
+import game.Fen;
+import game.Move;
+import game.MoveGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PawnHashTableTest {
+    // Random games from a fixed seed, evaluated by an evaluator that shares a small table across all of them
+    // and by one that gets a fresh table for every position, so a stale or colliding entry shows up as a difference
+    @Test
+    void cachedEvaluationMatchesUncached() {
+        Random random = new Random(13);
+        PawnHashTable shared = new PawnHashTable(1);
+        Evaluator cached = new Evaluator(shared);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int game = 0; game < 50; game++) {
+            BitBoard bits = new BitBoard();
+            Fen.load(Fen.START_POSITION, bits);
+            for (int ply = 0; ply < 80; ply++) {
+                assertEquals(bits.computePawnKey(), bits.pawnKey());
+                assertEquals(new Evaluator(new PawnHashTable(1)).evaluate(bits), cached.evaluate(bits), Fen.toFen(bits));
+                int count = MoveGenerator.generate(bits, bits.sideToMove(), moves);
+                if (count == 0) {
+                    break;
+                }
+                bits.make(moves[random.nextInt(count)]);
+            }
+        }
+        assertTrue(shared.getHits() > 0);
+        assertTrue(shared.getProbes() >= shared.getHits());
+    }
+
+    @Test
+    void pieceMovesKeepThePawnKey() {
+        BitBoard bits = new BitBoard();
+        Fen.load(Fen.START_POSITION, bits);
+        long pawnKey = bits.pawnKey();
+        long key = bits.key();
+        bits.make(findMove(bits, "g1f3"));
+        assertEquals(pawnKey, bits.pawnKey());
+        assertTrue(key != bits.key());
+        bits.make(findMove(bits, "e7e5"));
+        assertTrue(pawnKey != bits.pawnKey());
+    }
+
+    private static int findMove(BitBoard bits, String text) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(bits, bits.sideToMove(), moves);
+        for (int i = 0; i < count; i++) {
+            if (Move.toString(moves[i]).equals(text)) {
+                return moves[i];
+            }
+        }
+        throw new AssertionError(text);
+    }
+}
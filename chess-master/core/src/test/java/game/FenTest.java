@@ -0,0 +1,74 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FenTest {
+    @ParameterizedTest
+    @ValueSource(strings = {
+            Fen.START_POSITION,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3",
+            "rnbqkbnr/pppp1ppp/8/8/3Pp3/8/PPP1PPPP/RNBQKBNR b KQkq d3 0 3",
+            "4k3/8/8/8/8/8/8/4K3 b - - 99 120",
+    })
+    void roundTrip(String fen) {
+        assertEquals(fen, reload(fen));
+    }
+
+    @Test
+    void missingFieldsTakeDefaults() {
+        assertEquals("4k3/8/8/8/8/8/8/4K3 w - - 0 1", reload("4k3/8/8/8/8/8/8/4K3 w"));
+    }
+
+    // BitBoard.make only sets the square when a pawn can capture there, and a loaded position must agree
+    @Test
+    void enPassantSquareWithoutACaptureIsDropped() {
+        assertEquals("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2",
+                reload("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "4k3/8/8/8/8/8/8/4K3",
+            "4k3/8/8/8/8/8/4K3 w - - 0 1",
+            "4k3/8/8/8/8/8/8/8/4K3 w - - 0 1",
+            "4k3/8/8/8/8/8/7/4K3 w - - 0 1",
+            "4k3/8/8/8/8/8/9/4K3 w - - 0 1",
+            "4k3/8/8/8/8/8/8/4K4 w - - 0 1",
+            "4k3/8/8/8/8/8/8/4X3 w - - 0 1",
+            "P3k3/8/8/8/8/8/8/4K3 w - - 0 1",
+            "4k3/8/8/8/8/8/8/p3K3 w - - 0 1",
+            "8/8/8/8/8/8/8/4K3 w - - 0 1",
+            "4k3/8/8/8/8/8/8/3KK3 w - - 0 1",
+            "4k3/8/8/8/8/8/8/4K3 x - - 0 1",
+            "4k3/8/8/8/8/8/4Q3/4K3 w - - 0 1",
+            "4k3/8/8/8/8/8/8/4K3 w K - 0 1",
+            "4k3/8/8/8/8/8/8/R3K2R w KX - 0 1",
+            "r3k2r/8/8/8/8/8/8/R4K1R w KQkq - 0 1",
+            "4k3/8/8/3pP3/8/8/8/4K3 w - d3 0 1",
+            "4k3/8/8/4P3/8/8/8/4K3 w - d6 0 1",
+            "4k3/8/8/3pP3/8/8/8/4K3 w - z9 0 1",
+            "4k3/8/8/8/8/8/8/4K3 w - - -5 1",
+            "4k3/8/8/8/8/8/8/4K3 w - - 131072 1",
+            "4k3/8/8/8/8/8/8/4K3 w - - x 1",
+            "4k3/8/8/8/8/8/8/4K3 w - - 0 0",
+    })
+    void rejectsPositionsTheEngineCannotHandle(String fen) {
+        assertThrows(IllegalArgumentException.class, () -> Fen.load(fen, new BitBoard()));
+    }
+
+    private static String reload(String fen) {
+        BitBoard bits = new BitBoard();
+        Fen.load(fen, bits);
+        return Fen.toFen(bits);
+    }
+}
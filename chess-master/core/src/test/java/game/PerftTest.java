@@ -0,0 +1,49 @@
+package game;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The standard perft positions (chessprogramming.org/Perft_Results), at depths that keep the run to a few seconds
+class PerftTest {
+    @ParameterizedTest(name = "{0} depth {1}")
+    @CsvSource(delimiter = ';', value = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1; 5; 4865609",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1; 4; 4085603",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1; 5; 674624",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1; 4; 422333",
+            "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1; 4; 422333",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8; 4; 2103487",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10; 4; 3894594",
+    })
+    void countsMatchPublishedResults(String fen, int depth, long expected) {
+        BitBoard bits = new BitBoard();
+        Fen.load(fen, bits);
+        assertEquals(expected, Perft.perft(bits, depth));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = ';', value = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+    })
+    void makeAndUnmakeRestoreThePositionAndKeys(String fen) {
+        BitBoard bits = new BitBoard();
+        Fen.load(fen, bits);
+        String before = Fen.toFen(bits);
+        long key = bits.key();
+        long pawnKey = bits.pawnKey();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(bits, bits.sideToMove(), moves);
+        for (int i = 0; i < count; i++) {
+            bits.make(moves[i]);
+            assertEquals(bits.computeKey(), bits.key(), Move.toString(moves[i]));
+            assertEquals(bits.computePawnKey(), bits.pawnKey(), Move.toString(moves[i]));
+            bits.unmake();
+            assertEquals(before, Fen.toFen(bits));
+            assertEquals(key, bits.key());
+            assertEquals(pawnKey, bits.pawnKey());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PositionCodecTest {
+    @ParameterizedTest
+    @ValueSource(strings = {
+            Fen.START_POSITION,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3",
+            "rnbqkbnr/pppp1ppp/8/8/3Pp3/8/PPP1PPPP/RNBQKBNR b KQkq d3 0 3",
+            "4k3/8/8/8/8/8/8/4K3 b - - 99 65535",
+    })
+    void roundTrip(String fen) {
+        BitBoard bits = new BitBoard();
+        Fen.load(fen, bits);
+        byte[] encoded = PositionCodec.encode(bits);
+        assertEquals(PositionCodec.ENCODED_SIZE, encoded.length);
+        assertEquals(fen, decode(encoded, 0));
+    }
+
+    // Positions reached by play, encoded at an offset into a larger buffer, decode to the same FEN and key
+    @Test
+    void roundTripAlongRandomGames() {
+        Random random = new Random(17);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        byte[] buffer = new byte[PositionCodec.ENCODED_SIZE + 5];
+        for (int game = 0; game < 20; game++) {
+            BitBoard bits = new BitBoard();
+            Fen.load(Fen.START_POSITION, bits);
+            for (int ply = 0; ply < 100; ply++) {
+                PositionCodec.encode(bits, buffer, 5);
+                BitBoard decoded = new BitBoard();
+                PositionCodec.decode(buffer, 5, decoded);
+                assertEquals(Fen.toFen(bits), Fen.toFen(decoded));
+                assertEquals(bits.key(), decoded.computeKey());
+                int count = MoveGenerator.generate(bits, bits.sideToMove(), moves);
+                if (count == 0) {
+                    break;
+                }
+                bits.make(moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    @Test
+    void halfmoveClockIsCapped() {
+        BitBoard bits = new BitBoard();
+        Fen.load("4k3/8/8/8/8/8/8/4K3 w - - 300 200", bits);
+        assertEquals("4k3/8/8/8/8/8/8/4K3 w - - 127 200", decode(PositionCodec.encode(bits), 0));
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PositionCodec.decode(new byte[PositionCodec.ENCODED_SIZE - 1], 0, new BitBoard()));
+        byte[] badPiece = new byte[PositionCodec.ENCODED_SIZE];
+        badPiece[7] = 1;
+        badPiece[8] = (byte) 0xC0;
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(badPiece, 0, new BitBoard()));
+        byte[] badFile = new byte[PositionCodec.ENCODED_SIZE];
+        badFile[24] = (byte) 0x90;
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(badFile, 0, new BitBoard()));
+    }
+
+    private static String decode(byte[] encoded, int offset) {
+        BitBoard bits = new BitBoard();
+        PositionCodec.decode(encoded, offset, bits);
+        return Fen.toFen(bits);
+    }
+}
@@ -0,0 +1,110 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SanTest {
+    private final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+
+    @Test
+    void fileDisambiguation() {
+        BitBoard bits = position("4k3/8/8/8/8/8/8/1N2KN2 w - - 0 1");
+        assertEquals("b1d2", Move.toString(San.parse(bits, "Nbd2", buffer)));
+        assertEquals("f1d2", Move.toString(San.parse(bits, "Nfd2", buffer)));
+        assertEquals(Move.NONE, San.parse(bits, "Nd2", buffer));
+        assertEquals("Nbd2", San.format(bits, San.parse(bits, "Nbd2", buffer), buffer));
+    }
+
+    @Test
+    void rankDisambiguation() {
+        BitBoard bits = position("4k3/8/8/R7/8/8/8/R3K3 w - - 0 1");
+        assertEquals("a1a3", Move.toString(San.parse(bits, "R1a3", buffer)));
+        assertEquals("a5a3", Move.toString(San.parse(bits, "R5a3", buffer)));
+        assertEquals(Move.NONE, San.parse(bits, "Ra3", buffer));
+        assertEquals("R5a3", San.format(bits, San.parse(bits, "R5a3", buffer), buffer));
+    }
+
+    @Test
+    void promotion() {
+        BitBoard bits = position("8/P7/8/8/8/8/8/k1K5 w - - 0 1");
+        int queen = San.parse(bits, "a8=Q+", buffer);
+        assertTrue(Move.isPromotion(queen));
+        assertEquals(BitBoard.QUEEN, Move.promotionType(queen));
+        assertEquals(BitBoard.KNIGHT, Move.promotionType(San.parse(bits, "a8=N", buffer)));
+        assertEquals("a8=Q#", San.format(bits, queen, buffer)); // Kc1 covers b1 and b2
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "O-O", "0-0", "O-O+" })
+    void kingSideCastling(String san) {
+        BitBoard bits = position("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        assertEquals("e1g1", Move.toString(San.parse(bits, san, buffer)));
+    }
+
+    @Test
+    void queenSideCastling() {
+        BitBoard bits = position("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1");
+        int move = San.parse(bits, "O-O-O", buffer);
+        assertTrue(Move.isCastling(move));
+        assertEquals("e8c8", Move.toString(move));
+        assertEquals(move, San.parse(bits, "0-0-0", buffer));
+    }
+
+    @Test
+    void enPassant() {
+        BitBoard bits = position("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1");
+        int move = San.parse(bits, "exd6", buffer);
+        assertTrue(Move.isEnPassant(move));
+        assertEquals("exd6", San.format(bits, move, buffer));
+    }
+
+    @Test
+    void illegalMovesAreRejected() {
+        BitBoard bits = position(Fen.START_POSITION);
+        assertEquals(Move.NONE, San.parse(bits, "e5", buffer));
+        assertEquals(Move.NONE, San.parse(bits, "Ke2", buffer));
+        assertEquals(Move.NONE, San.parse(bits, "O-O", buffer));
+        assertEquals(Move.NONE, San.parse(bits, "Nc4", buffer));
+        assertEquals(Move.NONE, San.parse(bits, "x", buffer));
+    }
+
+    // Every legal move, and every reply to it, formats to SAN that parses back to the same move
+    @ParameterizedTest
+    @ValueSource(strings = {
+            Fen.START_POSITION,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+    })
+    void formatAndParseRoundTrip(String fen) {
+        BitBoard bits = position(fen);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[] replies = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(bits, bits.sideToMove(), moves);
+        for (int i = 0; i < count; i++) {
+            assertRoundTrip(bits, moves[i]);
+            bits.make(moves[i]);
+            int replyCount = MoveGenerator.generate(bits, bits.sideToMove(), replies);
+            for (int j = 0; j < replyCount; j++) {
+                assertRoundTrip(bits, replies[j]);
+            }
+            bits.unmake();
+        }
+    }
+
+    private void assertRoundTrip(BitBoard bits, int move) {
+        String san = San.format(bits, move, buffer);
+        assertEquals(move, San.parse(bits, san, buffer), san);
+    }
+
+    private static BitBoard position(String fen) {
+        BitBoard bits = new BitBoard();
+        Fen.load(fen, bits);
+        return bits;
+    }
+}
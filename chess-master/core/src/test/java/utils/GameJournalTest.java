@@ -0,0 +1,190 @@
+package utils;
+
+import game.BitBoard;
+import game.Fen;
+import game.PositionCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void entriesAreReplayedOnOpen() throws IOException {
+        Path path = directory.resolve("games.journal");
+        try (GameJournal journal = GameJournal.open(path, null)) {
+            for (int i = 0; i < 3; i++) {
+                journal.record(entry("alice", "bob", i % 3, i));
+            }
+            assertEquals(3, journal.getEntryCount());
+            assertEquals(Files.size(path), journal.getSize());
+        }
+
+        List<GameJournal.Entry> entries = new ArrayList<>();
+        List<Long> ends = new ArrayList<>();
+        try (GameJournal journal = GameJournal.open(path, 0, (entry, end) -> {
+            entries.add(entry);
+            ends.add(end);
+        })) {
+            assertEquals(3, journal.getEntryCount());
+        }
+        assertEquals(3, entries.size());
+        for (int i = 0; i < 3; i++) {
+            GameJournal.Entry entry = entries.get(i);
+            assertEquals("alice", entry.getPlayer1());
+            assertEquals("bob", entry.getPlayer2());
+            assertEquals(i % 3, entry.getResult());
+            assertEquals(i, entry.getMoveCount());
+            assertArrayEquals(startPosition(), entry.getStartPosition());
+        }
+        assertEquals(Files.size(path), (long) ends.get(2));
+    }
+
+    @Test
+    void concurrentAppendsShareSyncs() throws Exception {
+        Path path = directory.resolve("games.journal");
+        List<Long> ends = new ArrayList<>();
+        try (GameJournal journal = GameJournal.open(path, 0, (entry, end) -> ends.add(end))) {
+            List<CompletableFuture<Void>> pending = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                pending.add(journal.append(entry("alice", "bob", GameJournal.DRAW, i % 7)));
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).get();
+            assertEquals(500, journal.getEntryCount());
+            assertTrue(journal.getSyncCount() <= 500);
+        }
+        for (int i = 1; i < ends.size(); i++) {
+            assertTrue(ends.get(i) > ends.get(i - 1));
+        }
+        assertEquals(500, replay(path, 0).size());
+    }
+
+    @Test
+    void tornTailIsCutOff() throws IOException {
+        Path path = journalWith(3);
+        long intact = Files.size(path);
+        // A record header promising more payload than follows, as a crash mid-write leaves it
+        Files.write(path, ByteBuffer.allocate(20).putInt(100).putInt(0).array(), StandardOpenOption.APPEND);
+
+        assertEquals(3, replay(path, 0).size());
+        assertEquals(intact, Files.size(path));
+
+        try (GameJournal journal = GameJournal.open(path, null)) {
+            journal.record(entry("carol", "dave", GameJournal.FIRST_WON, 2));
+        }
+        assertEquals(4, replay(path, 0).size());
+    }
+
+    @Test
+    void badChecksumEndsReplay() throws IOException {
+        Path path = journalWith(3);
+        List<Long> ends = new ArrayList<>();
+        GameJournal.read(path, 0, (entry, end) -> ends.add(end));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Flip a byte inside the second record's payload
+            ByteBuffer b = ByteBuffer.allocate(1);
+            long offset = ends.get(0) + 12;
+            channel.read(b, offset);
+            channel.write(ByteBuffer.wrap(new byte[] { (byte) ~b.get(0) }), offset);
+        }
+
+        assertEquals(1, replay(path, 0).size());
+        assertEquals((long) ends.get(0), Files.size(path));
+    }
+
+    @Test
+    void openAndReadFromAnOffset() throws IOException {
+        Path path = journalWith(3);
+        List<Long> ends = new ArrayList<>();
+        GameJournal.read(path, 0, (entry, end) -> ends.add(end));
+
+        assertEquals(2, replay(path, ends.get(0)).size());
+        List<GameJournal.Entry> read = new ArrayList<>();
+        assertEquals(Files.size(path), GameJournal.read(path, ends.get(1), (entry, end) -> read.add(entry)));
+        assertEquals(1, read.size());
+        assertEquals(0, replay(path, ends.get(2)).size());
+
+        assertThrows(IllegalArgumentException.class, () -> replay(path, Files.size(path) + 1));
+        // Not a record boundary: refused rather than taken for a torn write and truncated
+        assertThrows(IOException.class, () -> replay(path, ends.get(0) + 3));
+        assertEquals((long) ends.get(2), Files.size(path));
+    }
+
+    @Test
+    void rejectsEntriesItCannotStore() {
+        byte[] start = startPosition();
+        assertThrows(IllegalArgumentException.class, () -> new GameJournal.Entry(0, "alice", "bob", 3, start, new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> new GameJournal.Entry(0, "", "bob", 0, start, new int[0]));
+        assertThrows(IllegalArgumentException.class,
+                () -> new GameJournal.Entry(0, "a".repeat(PlayerStore.MAX_NAME_BYTES + 1), "bob", 0, start, new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> new GameJournal.Entry(0, "alice", "bob", 0, new byte[10], new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> new GameJournal.Entry(0, "alice", "bob", 0, start, new int[300_000]));
+    }
+
+    @Test
+    void appendAfterCloseFails() throws IOException {
+        Path path = directory.resolve("games.journal");
+        GameJournal journal = GameJournal.open(path, null);
+        journal.close();
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> journal.append(entry("alice", "bob", GameJournal.DRAW, 0)).get());
+        assertInstanceOf(IOException.class, e.getCause());
+        assertThrows(IOException.class, () -> journal.record(entry("alice", "bob", GameJournal.DRAW, 0)));
+    }
+
+    @Test
+    void refusesFilesThatAreNotJournals() throws IOException {
+        Path path = directory.resolve("other.bin");
+        Files.write(path, "not a journal at all".getBytes());
+        assertThrows(IOException.class, () -> GameJournal.open(path, null));
+        assertEquals(20, Files.size(path));
+    }
+
+    private Path journalWith(int entries) throws IOException {
+        Path path = directory.resolve("games.journal");
+        try (GameJournal journal = GameJournal.open(path, null)) {
+            for (int i = 0; i < entries; i++) {
+                journal.record(entry("alice", "bob", GameJournal.SECOND_WON, i + 1));
+            }
+        }
+        return path;
+    }
+
+    private static List<GameJournal.Entry> replay(Path path, long from) throws IOException {
+        List<GameJournal.Entry> entries = new ArrayList<>();
+        GameJournal.open(path, from, (entry, end) -> entries.add(entry)).close();
+        return entries;
+    }
+
+    private static GameJournal.Entry entry(String first, String second, int result, int moves) {
+        int[] packed = new int[moves];
+        for (int i = 0; i < moves; i++) {
+            packed[i] = i + 1;
+        }
+        return new GameJournal.Entry(1_700_000_000_000L, first, second, result, startPosition(), packed);
+    }
+
+    private static byte[] startPosition() {
+        BitBoard bits = new BitBoard();
+        Fen.load(Fen.START_POSITION, bits);
+        return PositionCodec.encode(bits);
+    }
+}
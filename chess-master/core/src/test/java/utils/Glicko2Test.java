@@ -0,0 +1,26 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Glicko2Test {
+    // The worked example in Glickman's "Example of the Glicko-2 system"
+    @Test
+    void matchesThePublishedExample() {
+        double[] rated = Glicko2.rate(1500, 200, 0.06,
+                new double[] { 1400, 1550, 1700 }, new double[] { 30, 100, 300 }, new double[] { 1, 0, 0 });
+        assertEquals(1464.06, rated[0], 0.01);
+        assertEquals(151.52, rated[1], 0.01);
+        assertEquals(0.05999, rated[2], 0.00001);
+    }
+
+    @Test
+    void expectedScoreIsSymmetric() {
+        assertEquals(0.5, Glicko2.expectedScore(1500, 1500, 100), 1e-12);
+        double stronger = Glicko2.expectedScore(1700, 1500, 50);
+        assertTrue(stronger > 0.5);
+        assertEquals(1, stronger + Glicko2.expectedScore(1500, 1700, 50), 1e-12);
+    }
+}
@@ -0,0 +1,150 @@
+package utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayerManagerTest {
+    @TempDir
+    Path directory;
+
+    private Path storePath;
+    private Path journalPath;
+
+    @BeforeEach
+    void useTemporaryDirectory() {
+        PlayerManager.setDataDirectory(directory);
+        storePath = directory.resolve("players.db");
+        journalPath = directory.resolve("games.journal");
+    }
+
+    @AfterEach
+    void closeFiles() {
+        PlayerManager.setDataDirectory(directory.resolve("closed"));
+    }
+
+    @Test
+    void gamesAreCountedOnceAcrossRestarts() throws IOException {
+        recordGames();
+        assertRecorded();
+        PlayerManager.setDataDirectory(directory);
+        assertRecorded();
+        try (PlayerStore store = reopenStoreAfterClose()) {
+            assertEquals(Files.size(journalPath), store.getJournalOffset());
+        }
+    }
+
+    // A store restored from before the last games, but closed cleanly, only replays the games after its offset
+    @Test
+    void storeBehindTheJournalResumesFromItsOffset() throws IOException {
+        PlayerManager.addPlayers("alice", "bob", "carol");
+        PlayerManager.recordGameResult("alice", "bob");
+        PlayerManager.setDataDirectory(directory);
+        Path behind = directory.resolve("behind.db");
+        Files.copy(storePath, behind);
+        PlayerManager.recordGameResult("alice", "bob", true);
+        PlayerManager.recordGameResult("bob", "carol");
+        PlayerManager.recordGameResult("carol", "alice", true);
+        PlayerManager.setDataDirectory(directory.resolve("closed"));
+        Files.move(behind, storePath, StandardCopyOption.REPLACE_EXISTING);
+
+        PlayerManager.setDataDirectory(directory);
+        assertRecorded();
+    }
+
+    @Test
+    void storeNotClosedCleanlyIsRebuilt() throws IOException {
+        recordGames();
+        // The store stays dirty until it is flushed on close, which a crash would never reach
+        Path crashed = directory.resolve("crashed.db");
+        Files.copy(storePath, crashed);
+        PlayerManager.setDataDirectory(directory.resolve("closed"));
+        Files.move(crashed, storePath, StandardCopyOption.REPLACE_EXISTING);
+
+        PlayerManager.setDataDirectory(directory);
+        assertRecorded();
+    }
+
+    @Test
+    void unreadableStoreIsRebuilt() throws IOException {
+        recordGames();
+        PlayerManager.setDataDirectory(directory.resolve("closed"));
+        Files.write(storePath, new byte[1000]);
+
+        PlayerManager.setDataDirectory(directory);
+        assertRecorded();
+    }
+
+    @Test
+    void resultsFileIsImportedIntoANewStore() throws IOException {
+        Files.write(directory.resolve("chess_results.txt"),
+                List.of("alice vs bob,alice won,2024-01-01", "bob vs carol,Draw,2024-01-02", "garbage"));
+        PlayerManager.recordGameResult("carol", "alice");
+        assertEquals(1, PlayerManager.getStats("alice").getWins());
+        assertEquals(1, PlayerManager.getStats("alice").getLosses());
+        assertEquals(1, PlayerManager.getStats("bob").getDraws());
+        assertEquals(1, PlayerManager.getStats("carol").getWins());
+    }
+
+    // Replaying everything from scratch must give the same counts and ratings as counting game by game
+    @Test
+    void recomputationMatchesIncrementalCounting() throws IOException {
+        recordGames();
+        PlayerManager.addPlayers("dave");
+        List<PlayerStore.Stats> before = PlayerManager.getLeaderboard(10);
+        PlayerManager.recomputeRatings();
+        assertEquals(before.toString(), PlayerManager.getLeaderboard(10).toString());
+        assertFalse(Files.exists(directory.resolve("players.db.rebuild")));
+        PlayerManager.recordGameResult("dave", "alice");
+        assertEquals(1, PlayerManager.getStats("dave").getWins());
+    }
+
+    @Test
+    void failedSwapKeepsServingTheOldStore() throws IOException {
+        recordGames();
+        assertThrows(IOException.class, () -> PlayerManager.replaceStore(directory.resolve("missing.db")));
+        assertRecorded();
+        PlayerManager.recordGameResult("dave", "alice");
+        assertEquals(1, PlayerManager.getStats("dave").getWins());
+        assertTrue(Files.exists(storePath));
+    }
+
+    private static void recordGames() {
+        PlayerManager.addPlayers("alice", "bob", "carol");
+        PlayerManager.recordGameResult("alice", "bob");
+        PlayerManager.recordGameResult("alice", "bob", true);
+        PlayerManager.recordGameResult("bob", "carol");
+        PlayerManager.recordGameResult("carol", "alice", true);
+    }
+
+    private static void assertRecorded() {
+        PlayerStore.Stats alice = PlayerManager.getStats("alice");
+        assertEquals(1, alice.getWins());
+        assertEquals(2, alice.getDraws());
+        PlayerStore.Stats bob = PlayerManager.getStats("bob");
+        assertEquals(1, bob.getWins());
+        assertEquals(1, bob.getLosses());
+        assertEquals(1, bob.getDraws());
+        PlayerStore.Stats carol = PlayerManager.getStats("carol");
+        assertEquals(1, carol.getLosses());
+        assertEquals(1, carol.getDraws());
+        assertEquals(3, PlayerManager.getPlayers().size());
+    }
+
+    private PlayerStore reopenStoreAfterClose() throws IOException {
+        PlayerManager.setDataDirectory(directory.resolve("closed"));
+        return PlayerStore.open(storePath);
+    }
+}
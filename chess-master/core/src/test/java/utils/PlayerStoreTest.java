@@ -0,0 +1,136 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayerStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void resultsAndOffsetSurviveReopening() throws IOException {
+        Path path = directory.resolve("players.db");
+        try (PlayerStore store = PlayerStore.open(path)) {
+            assertTrue(store.add("alice"));
+            assertFalse(store.add("alice"));
+            store.recordResult("alice", "bob", GameJournal.FIRST_WON);
+            store.recordResult("alice", "bob", GameJournal.DRAW);
+            store.setJournalOffset(1234);
+        }
+        try (PlayerStore store = PlayerStore.open(path)) {
+            assertEquals(2, store.size());
+            assertEquals(1234, store.getJournalOffset());
+            assertEquals(List.of("alice", "bob"), store.getNames());
+            PlayerStore.Stats alice = store.get("alice");
+            assertEquals(1, alice.getWins());
+            assertEquals(0, alice.getLosses());
+            assertEquals(1, alice.getDraws());
+            assertEquals(1, alice.getRank());
+            assertTrue(alice.getRating() > PlayerStore.INITIAL_RATING);
+            assertEquals(1, store.get("bob").getLosses());
+            assertEquals(2, store.getRank("bob"));
+            assertNull(store.get("carol"));
+            assertEquals(0, store.getRank("carol"));
+        }
+    }
+
+    // A copy of the file taken between a change and the next flush is what an OS crash could leave behind
+    @Test
+    void storeChangedSinceItsLastFlushIsRefused() throws IOException {
+        Path path = directory.resolve("players.db");
+        Path crashed = directory.resolve("crashed.db");
+        Path flushed = directory.resolve("flushed.db");
+        try (PlayerStore store = PlayerStore.open(path)) {
+            store.recordResult("alice", "bob", GameJournal.DRAW);
+            Files.copy(path, crashed);
+            store.flush();
+            Files.copy(path, flushed);
+        }
+        IOException e = assertThrows(IOException.class, () -> PlayerStore.open(crashed));
+        assertTrue(e.getMessage().contains("not closed cleanly"));
+        try (PlayerStore store = PlayerStore.open(flushed)) {
+            assertEquals(2, store.size());
+        }
+        try (PlayerStore store = PlayerStore.open(path)) {
+            assertEquals(1, store.get("alice").getDraws());
+        }
+    }
+
+    @Test
+    void refusesFilesThatAreNotStores() throws IOException {
+        Path path = directory.resolve("players.db");
+        Files.write(path, new byte[100]);
+        assertThrows(IOException.class, () -> PlayerStore.open(path));
+    }
+
+    @Test
+    void growsAndKeepsTheLeaderboardSorted() throws IOException {
+        Path path = directory.resolve("players.db");
+        Random random = new Random(24);
+        int players = 1000;
+        try (PlayerStore store = PlayerStore.open(path)) {
+            for (int game = 0; game < 5000; game++) {
+                int first = random.nextInt(players);
+                int second = random.nextInt(players);
+                // Lower numbered players win more often, so the ratings spread out
+                int result = random.nextInt(players) > first ? GameJournal.FIRST_WON
+                        : random.nextBoolean() ? GameJournal.DRAW : GameJournal.SECOND_WON;
+                store.recordResult("player" + first, "player" + second, result);
+            }
+            assertLeaderboardConsistent(store);
+        }
+        try (PlayerStore store = PlayerStore.open(path)) {
+            assertTrue(store.size() > 256);
+            assertLeaderboardConsistent(store);
+            int games = 0;
+            for (String name : store.getNames()) {
+                games += store.get(name).getGames();
+            }
+            assertEquals(2 * 5000, games);
+        }
+        assertFalse(Files.exists(directory.resolve("players.db.tmp")));
+    }
+
+    @Test
+    void rejectsNamesThatDoNotFitARecord() throws IOException {
+        assertTrue(PlayerStore.isValidName("a".repeat(PlayerStore.MAX_NAME_BYTES)));
+        assertFalse(PlayerStore.isValidName("a".repeat(PlayerStore.MAX_NAME_BYTES + 1)));
+        assertFalse(PlayerStore.isValidName(""));
+        // 24 two-byte characters are 48 bytes
+        assertFalse(PlayerStore.isValidName("\u00e9".repeat(24)));
+        try (PlayerStore store = PlayerStore.open(directory.resolve("players.db"))) {
+            assertThrows(IllegalArgumentException.class, () -> store.add("a".repeat(PlayerStore.MAX_NAME_BYTES + 1)));
+            assertThrows(IllegalArgumentException.class, () -> store.recordResult("alice", "", GameJournal.DRAW));
+            assertThrows(IllegalArgumentException.class, () -> store.recordResult("alice", "bob", 3));
+            assertEquals(0, store.size());
+            assertTrue(store.add("\u00e9".repeat(23)));
+            assertEquals("\u00e9".repeat(23), store.getNames().get(0));
+        }
+    }
+
+    private static void assertLeaderboardConsistent(PlayerStore store) {
+        List<PlayerStore.Stats> board = store.getLeaderboard(Integer.MAX_VALUE);
+        assertEquals(store.size(), board.size());
+        for (int i = 0; i < board.size(); i++) {
+            PlayerStore.Stats stats = board.get(i);
+            assertEquals(i + 1, stats.getRank());
+            assertEquals(i + 1, store.getRank(stats.getName()));
+            assertEquals(stats.getName(), store.getRanked(i + 1).getName());
+            if (i > 0) {
+                assertTrue(board.get(i - 1).getRating() >= stats.getRating());
+            }
+        }
+    }
+}
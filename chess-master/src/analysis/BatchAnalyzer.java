@@ -0,0 +1,277 @@
+package analysis;
+
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchResult;
+import engine.TranspositionTable;
+import game.BitBoard;
+import game.ChessGame;
+import game.Fen;
+import game.Move;
+import game.MoveGenerator;
+import game.San;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Headless analysis of a PGN archive. Each game is replayed through ChessGame and the position before every
+// move is searched to a fixed depth. Games are analysed on a fixed pool of workers with at most a bounded
+// number in flight: when the workers fall behind, the reader blocks, so memory stays flat however large
+// the input is. Results are written in input order, one line per move:
+//   game,ply,move,best,score,depth
+// where the score is in centipawns from white's point of view. Malformed games are dropped by the reader.
+// Usage: BatchAnalyzer <input.pgn> <output.csv> [--threads N] [--depth N] [--hash MB] [--in-flight N]
+public class BatchAnalyzer {
+    private static final Future<String> END = CompletableFuture.completedFuture(null);
+
+    private final int threads;
+    private final int depth;
+    private final int hashMb;
+    private final int maxInFlight;
+
+    // Each worker thread keeps one game, search and table for every game it analyses
+    private final ThreadLocal<Worker> workers;
+
+    public BatchAnalyzer(int threads, int depth, int hashMb, int maxInFlight) {
+        this.threads = Math.max(1, threads);
+        this.depth = Math.max(1, depth);
+        this.hashMb = hashMb;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.workers = ThreadLocal.withInitial(() -> new Worker(this.hashMb));
+    }
+
+    public Summary run(PgnReader reader, Writer output) throws IOException {
+        long start = System.nanoTime();
+        BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(maxInFlight);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "analysis-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ResultWriter writer = new ResultWriter(pending, output);
+        Thread writerThread = new Thread(writer, "analysis-writer");
+        writerThread.start();
+
+        long games = 0;
+        try {
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                PgnGame task = game;
+                // Blocks while maxInFlight games are queued or running: this is the back-pressure
+                pending.put(executor.submit(() -> analyse(task)));
+                games++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading games", e);
+        } finally {
+            putQuietly(pending, END);
+            joinQuietly(writerThread);
+            executor.shutdownNow();
+        }
+        if (writer.failure != null) {
+            throw writer.failure;
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000L);
+        return new Summary(games, reader.getGamesSkipped(), writer.positions, writer.errors, elapsedMillis);
+    }
+
+    private String analyse(PgnGame game) {
+        Worker worker = workers.get();
+        BitBoard bits = worker.game.getBoard().getBitBoard();
+        StringBuilder out = new StringBuilder(32 * game.getMoveCount() + 32);
+        try {
+            // The reader has already checked every move, so they can be played without further tests
+            Fen.load(game.getStartPosition(), bits);
+            for (int ply = 0; ply < game.getMoveCount(); ply++) {
+                int move = game.getMove(ply);
+                String san = San.format(bits, move, worker.buffer);
+                SearchResult result = worker.search.search(SearchLimits.depth(depth));
+                int whiteScore = bits.sideToMove() == BitBoard.WHITE ? result.getScore() : -result.getScore();
+                String best = result.getBestMove() == Move.NONE ? "-" : San.format(bits, result.getBestMove(), worker.buffer);
+                out.append(game.getNumber()).append(',').append(ply + 1).append(',').append(san).append(',')
+                        .append(best).append(',').append(whiteScore).append(',').append(result.getDepth()).append('\n');
+                worker.game.makeMove(move);
+            }
+        } catch (RuntimeException e) {
+            out.append(game.getNumber()).append(",error,").append(e).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void putQuietly(BlockingQueue<Future<String>> queue, Future<String> future) {
+        try {
+            queue.put(future);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Worker {
+        final ChessGame game = new ChessGame();
+        final Search search;
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+
+        Worker(int hashMb) {
+            search = new Search(game, new TranspositionTable(hashMb));
+        }
+    }
+
+    // Takes finished games in submission order and writes them out. After a write error it keeps draining
+    // the queue so the reader never blocks forever, and the error is rethrown once everything has stopped
+    private static final class ResultWriter implements Runnable {
+        private final BlockingQueue<Future<String>> pending;
+        private final Writer output;
+        volatile IOException failure;
+        volatile long positions;
+        volatile long errors;
+
+        ResultWriter(BlockingQueue<Future<String>> pending, Writer output) {
+            this.pending = pending;
+            this.output = output;
+        }
+
+        @Override
+        public void run() {
+            try {
+                write("game,ply,move,best,score,depth\n");
+                while (true) {
+                    Future<String> next = pending.take();
+                    if (next == END) {
+                        break;
+                    }
+                    String lines = next.get();
+                    for (int i = lines.indexOf('\n'); i >= 0; i = lines.indexOf('\n', i + 1)) {
+                        positions++;
+                    }
+                    if (lines.contains(",error,")) {
+                        positions--;
+                        errors++;
+                    }
+                    write(lines);
+                }
+                if (failure == null) {
+                    output.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                failure = new IOException("Analysis failed", e.getCause());
+                drain();
+            } catch (IOException e) {
+                failure = e;
+                drain();
+            }
+        }
+
+        private void write(String text) throws IOException {
+            if (failure == null) {
+                output.write(text);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (pending.take() != END) {
+                    // Discard: the run has already failed
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static final class Summary {
+        private final long games;
+        private final long skipped;
+        private final long positions;
+        private final long errors;
+        private final long elapsedMillis;
+
+        Summary(long games, long skipped, long positions, long errors, long elapsedMillis) {
+            this.games = games;
+            this.skipped = skipped;
+            this.positions = positions;
+            this.errors = errors;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        // Malformed games the reader dropped; they are not counted in getGames
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getPositions() {
+            return positions;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getGamesPerSecond() {
+            return games * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games, %d skipped, %d positions, %d errors in %d ms (%.1f games/s, %.0f positions/s)",
+                    games, skipped, positions, errors, elapsedMillis, getGamesPerSecond(), positions * 1000.0 / elapsedMillis);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchAnalyzer <input.pgn> <output.csv> [--threads N] [--depth N] [--hash MB] [--in-flight N]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        int depth = 6;
+        int hashMb = Search.DEFAULT_TABLE_MB;
+        int inFlight = -1;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--depth": depth = Integer.parseInt(args[++i]); break;
+                case "--hash": hashMb = Integer.parseInt(args[++i]); break;
+                case "--in-flight": inFlight = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (inFlight < 0) {
+            inFlight = threads * 4;
+        }
+
+        BatchAnalyzer analyzer = new BatchAnalyzer(threads, depth, hashMb, inFlight);
+        try (PgnReader input = new PgnReader(Paths.get(args[0]));
+             Writer output = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            System.out.println(analyzer.run(input, output));
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package analysis;
+
+import engine.OpeningBook;
+import game.BitBoard;
+import game.Fen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Builds an OpeningBook file from PGN games. Every move in the first plies of each game becomes an entry for
+// the position it was played in, weighted like Polyglot books: 2 for each win of the side that played it,
+// 1 for each draw or unfinished game and 0 for each loss.
+// Usage: OpeningBookBuilder <games.pgn> <book.bin> [--plies N] [--min-games N]
+public class OpeningBookBuilder {
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    private final int maxPlies;
+    private final BitBoard bits = new BitBoard();
+
+    // Open-addressing table of (position key, book move) pairs; a move of -1 marks an empty slot
+    private long[] keys = new long[1 << 16];
+    private int[] moves = new int[1 << 16];
+    private long[] weights = new long[1 << 16];
+    private int[] games = new int[1 << 16];
+    private int size;
+
+    public OpeningBookBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+        Arrays.fill(moves, -1);
+    }
+
+    public void add(PgnGame game) {
+        int whiteWeight;
+        int blackWeight;
+        switch (game.getResult()) {
+            case "1-0": whiteWeight = 2; blackWeight = 0; break;
+            case "0-1": whiteWeight = 0; blackWeight = 2; break;
+            default: whiteWeight = 1; blackWeight = 1;
+        }
+        Fen.load(game.getStartPosition(), bits);
+        int plies = Math.min(maxPlies, game.getMoveCount());
+        for (int ply = 0; ply < plies; ply++) {
+            int move = game.getMove(ply);
+            add(bits.key(), OpeningBook.encode(move), bits.sideToMove() == BitBoard.WHITE ? whiteWeight : blackWeight);
+            bits.make(move);
+        }
+    }
+
+    public int getEntryCount() {
+        return size;
+    }
+
+    private void add(long key, int move, int weight) {
+        if (size * 2 >= moves.length) {
+            grow();
+        }
+        int mask = moves.length - 1;
+        int slot = slot(key, move, mask);
+        while (moves[slot] != -1 && (keys[slot] != key || moves[slot] != move)) {
+            slot = (slot + 1) & mask;
+        }
+        if (moves[slot] == -1) {
+            keys[slot] = key;
+            moves[slot] = move;
+            size++;
+        }
+        weights[slot] += weight;
+        games[slot]++;
+    }
+
+    private static int slot(long key, int move, int mask) {
+        long hash = (key ^ (move * 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldMoves = moves;
+        long[] oldWeights = weights;
+        int[] oldGames = games;
+        int capacity = oldMoves.length * 2;
+        keys = new long[capacity];
+        moves = new int[capacity];
+        weights = new long[capacity];
+        games = new int[capacity];
+        Arrays.fill(moves, -1);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldMoves.length; i++) {
+            if (oldMoves[i] != -1) {
+                int slot = slot(oldKeys[i], oldMoves[i], mask);
+                while (moves[slot] != -1) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                moves[slot] = oldMoves[i];
+                weights[slot] = oldWeights[i];
+                games[slot] = oldGames[i];
+            }
+        }
+    }
+
+    // Writes the entries played in at least minGames games, sorted by unsigned key and then move, and
+    // returns how many were written. Weights are scaled down together if any exceeds 16 bits
+    public int write(Path path, int minGames) throws IOException {
+        int count = 0;
+        long maxWeight = 0;
+        for (int i = 0; i < moves.length; i++) {
+            if (moves[i] != -1 && games[i] >= minGames) {
+                keys[count] = keys[i];
+                moves[count] = moves[i];
+                weights[count] = weights[i];
+                maxWeight = Math.max(maxWeight, weights[i]);
+                count++;
+            }
+        }
+        // The table has been compacted in place, so it can no longer take new games
+        Arrays.fill(moves, count, moves.length, -1);
+        size = count;
+        sort(0, count - 1);
+
+        long divisor = maxWeight > MAX_WEIGHT ? (maxWeight + MAX_WEIGHT - 1) / MAX_WEIGHT : 1;
+        ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.ENTRY_SIZE * 4096);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < count; i++) {
+                if (!buffer.hasRemaining()) {
+                    flush(buffer, channel);
+                }
+                buffer.putLong(keys[i]);
+                buffer.putShort((short) moves[i]);
+                buffer.putShort((short) (weights[i] / divisor));
+                buffer.putInt(0); // Learn field, unused
+            }
+            flush(buffer, channel);
+        }
+        return count;
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Quicksort of the parallel entry arrays; recursing into the smaller side keeps the stack shallow
+    private void sort(int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long pivotKey = keys[middle];
+            int pivotMove = moves[middle];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(i, pivotKey, pivotMove) < 0) i++;
+                while (compare(j, pivotKey, pivotMove) > 0) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+    }
+
+    private int compare(int index, long key, int move) {
+        int byKey = Long.compareUnsigned(keys[index], key);
+        return byKey != 0 ? byKey : Integer.compare(moves[index], move);
+    }
+
+    private void swap(int a, int b) {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        int move = moves[a];
+        moves[a] = moves[b];
+        moves[b] = move;
+        long weight = weights[a];
+        weights[a] = weights[b];
+        weights[b] = weight;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: OpeningBookBuilder <games.pgn> <book.bin> [--plies N] [--min-games N]");
+            System.exit(1);
+        }
+        int plies = 20;
+        int minGames = 2;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--plies": plies = Integer.parseInt(args[++i]); break;
+                case "--min-games": minGames = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        long gameCount = 0;
+        try (PgnReader reader = new PgnReader(Paths.get(args[0]))) {
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                builder.add(game);
+                gameCount++;
+            }
+        }
+        int distinct = builder.getEntryCount();
+        int written = builder.write(Paths.get(args[1]), minGames);
+        System.out.printf("%d games, %d positions and moves, %d entries written in %d ms%n",
+                gameCount, distinct, written, (System.nanoTime() - start) / 1_000_000L);
+    }
+}
@@ -0,0 +1,51 @@
+package analysis;
+
+import game.Fen;
+
+import java.util.Map;
+
+// One game read from a PGN file: its tag pairs and the main line as packed moves, already checked for legality
+public class PgnGame {
+    private final long number;
+    private final Map<String, String> tags;
+    private final int[] moves;
+    private final String result;
+
+    public PgnGame(long number, Map<String, String> tags, int[] moves, String result) {
+        this.number = number;
+        this.tags = tags;
+        this.moves = moves;
+        this.result = result;
+    }
+
+    // Position of the game in its file, starting at 1 and counting skipped games too
+    public long getNumber() {
+        return number;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    // FEN of the position the moves start from
+    public String getStartPosition() {
+        String fen = tags.get("FEN");
+        return fen != null ? fen : Fen.START_POSITION;
+    }
+
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    public String getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,333 @@
+package analysis;
+
+import game.BitBoard;
+import game.ChessGame;
+import game.Fen;
+import game.Move;
+import game.MoveGenerator;
+import game.San;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Streaming PGN reader. Bytes are scanned straight out of a fixed channel buffer: no lines or whole-file
+// strings are built, and each SAN token is resolved against the legal moves of a position replayed as it
+// is read, so a game comes out as packed moves. Comments, variations, NAGs and move numbers are skipped.
+// A game with an illegal or unreadable move is dropped and reading carries on with the next one.
+public class PgnReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_TOKEN = 255;
+    private static final byte[] DRAW = "1/2-1/2".getBytes(StandardCharsets.US_ASCII);
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    private int position;
+    private int limit;
+    private long bytesRead;
+    private boolean lineStart = true;
+
+    private final byte[] token = new byte[MAX_TOKEN];
+    private final ChessGame game = new ChessGame();
+    private final BitBoard bits = game.getBoard().getBitBoard();
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+    private int[] moves = new int[256];
+
+    private long gamesRead;
+    private long gamesSkipped;
+
+    public PgnReader(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    public PgnReader(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    // Returns the next well-formed game, or null at the end of the input
+    public PgnGame next() throws IOException {
+        while (true) {
+            Map<String, String> tags = new LinkedHashMap<>();
+            int moveCount = 0;
+            String result = "*";
+            boolean started = false;
+            boolean inMoves = false;
+            boolean malformed = false;
+            int variationDepth = 0;
+
+            scan:
+            while (true) {
+                int c = read();
+                if (c < 0) {
+                    break;
+                }
+                boolean atLineStart = lineStart;
+                lineStart = c == '\n' || (atLineStart && (c == ' ' || c == '\t' || c == '\r'));
+                switch (c) {
+                    case ' ': case '\t': case '\r': case '\n':
+                        break;
+                    case '%':
+                        if (atLineStart) {
+                            skipLine(); // Escape line
+                        }
+                        break;
+                    case '[':
+                        if (inMoves) {
+                            position--; // A tag after the moves starts the next game, which had no result
+                            lineStart = true;
+                            break scan;
+                        }
+                        started = true;
+                        readTag(tags);
+                        break;
+                    case '{':
+                        skipComment();
+                        break;
+                    case ';':
+                        skipLine();
+                        break;
+                    case '(':
+                        variationDepth++;
+                        break;
+                    case ')':
+                        variationDepth = Math.max(0, variationDepth - 1);
+                        break;
+                    default:
+                        started = true;
+                        int length = readToken(c);
+                        if (variationDepth > 0) {
+                            break;
+                        }
+                        if (!inMoves) {
+                            inMoves = true;
+                            malformed |= !startPosition(tags.get("FEN"));
+                        }
+                        if (length < 0) {
+                            malformed = true; // Token longer than any legal SAN
+                        } else if (isResult(length)) {
+                            result = resultText(length);
+                            break scan;
+                        } else if (!malformed) {
+                            int move = resolve(length);
+                            if (move == Move.NONE) {
+                                malformed = true;
+                            } else if (move != -1) {
+                                if (moveCount == moves.length) {
+                                    moves = Arrays.copyOf(moves, moveCount * 2);
+                                }
+                                moves[moveCount++] = move;
+                                game.makeMove(move);
+                            }
+                        }
+                }
+            }
+
+            if (!started) {
+                return null;
+            }
+            gamesRead++;
+            if (malformed) {
+                gamesSkipped++;
+                continue;
+            }
+            return new PgnGame(gamesRead, tags, Arrays.copyOf(moves, moveCount), result);
+        }
+    }
+
+    // Games seen so far, including skipped ones
+    public long getGamesRead() {
+        return gamesRead;
+    }
+
+    public long getGamesSkipped() {
+        return gamesSkipped;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    private boolean startPosition(String fen) {
+        try {
+            Fen.load(fen != null ? fen : Fen.START_POSITION, bits);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    // Packed move for the SAN in the token buffer, -1 for move numbers and NAGs, Move.NONE if it is not legal
+    private int resolve(int length) {
+        if (token[0] == '$') {
+            return -1;
+        }
+        // Move numbers may be glued to the move ("12.e4") or stand alone ("12." or "12...")
+        int start = 0;
+        while (start < length && token[start] >= '0' && token[start] <= '9') {
+            start++;
+        }
+        if (start < length && token[start] == '.') {
+            while (start < length && token[start] == '.') {
+                start++;
+            }
+        } else {
+            start = 0;
+        }
+        if (start == length) {
+            return -1;
+        }
+        return San.parse(bits, token, start, length - start, moveBuffer);
+    }
+
+    private boolean isResult(int length) {
+        switch (length) {
+            case 1: return token[0] == '*';
+            case 3: return (token[0] == '1' || token[0] == '0') && token[1] == '-' && token[2] == (token[0] == '1' ? '0' : '1');
+            case 7: return Arrays.equals(token, 0, 7, DRAW, 0, 7);
+            default: return false;
+        }
+    }
+
+    private String resultText(int length) {
+        if (length == 1) return "*";
+        if (length == 7) return "1/2-1/2";
+        return token[0] == '1' ? "1-0" : "0-1";
+    }
+
+    // Reads a movetext token starting with the given byte into the token buffer; returns its length,
+    // or -1 if it did not fit
+    private int readToken(int first) throws IOException {
+        int length = 0;
+        token[length++] = (byte) first;
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                break;
+            }
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '{' || c == '(' || c == ')' || c == ';' || c == '[') {
+                position--;
+                break;
+            }
+            if (length == MAX_TOKEN) {
+                length = -1;
+            }
+            if (length >= 0) {
+                token[length++] = (byte) c;
+            }
+        }
+        return length;
+    }
+
+    // Reads [Name "value"] after the opening bracket; a tag that does not have this shape is ignored
+    private void readTag(Map<String, String> tags) throws IOException {
+        int c;
+        int nameLength = 0;
+        while ((c = read()) >= 0 && c != ' ' && c != '\t' && c != ']' && c != '\n') {
+            if (nameLength < MAX_TOKEN) {
+                token[nameLength++] = (byte) c;
+            }
+        }
+        String name = new String(token, 0, nameLength, StandardCharsets.US_ASCII);
+        while (c == ' ' || c == '\t') {
+            c = read();
+        }
+        if (c != '"') {
+            if (c != ']' && c != '\n') {
+                skipLine();
+            }
+            lineStart = true;
+            return;
+        }
+        int valueLength = 0;
+        boolean overflow = false;
+        while ((c = read()) >= 0 && c != '"' && c != '\n') {
+            if (c == '\\') {
+                c = read();
+            }
+            if (valueLength < MAX_TOKEN) {
+                token[valueLength++] = (byte) c;
+            } else {
+                overflow = true;
+            }
+        }
+        if (c == '"' && !overflow) {
+            tags.put(name, new String(token, 0, valueLength, StandardCharsets.UTF_8));
+        }
+        if (c != '\n') {
+            skipLine();
+        }
+        lineStart = true;
+    }
+
+    private void skipComment() throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != '}') {
+            // Comments may span lines
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != '\n') {
+            // Rest of the line is ignored
+        }
+        lineStart = true;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    // Only called with the buffer fully consumed, so one byte can always be pushed back after a read
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        if (n < 0) {
+            position = limit = 0;
+            return false;
+        }
+        bytesRead += n;
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Parses a PGN file without analysing it and reports the throughput. Usage: PgnReader <file.pgn>
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        long games = 0;
+        long moves = 0;
+        try (PgnReader reader = new PgnReader(Paths.get(args[0]))) {
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                games++;
+                moves += game.getMoveCount();
+            }
+            double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games, %d moves, %d skipped, %.1f MB in %.2f s (%.0f games/s, %.1f MB/s)%n",
+                    games, moves, reader.getGamesSkipped(), reader.getBytesRead() / 1e6, seconds,
+                    games / seconds, reader.getBytesRead() / 1e6 / seconds);
+        }
+    }
+}
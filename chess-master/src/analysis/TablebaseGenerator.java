@@ -0,0 +1,476 @@
+package analysis;
+
+import engine.Tablebase;
+import game.Attacks;
+import game.BitBoard;
+import game.Move;
+import game.MoveGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Writes the Tablebase files for a material set by retrograde analysis. An initial pass over every position
+// finds the mates, stalemates and illegal placements and looks up captures and promotions in the smaller
+// tables, which are generated first. Each later pass n then works back from the positions decided in pass
+// n - 1: un-moving the side that just moved gives the positions that can reach them, which are wins in n if
+// the decided position was lost, and losses in n if every one of their moves now leads to a won position.
+// Whatever is undecided when the passes stop is a draw. Every pass is split into chunks of the index that
+// run on a thread pool, and a chunk only ever decides positions inside itself.
+// Usage: TablebaseGenerator <directory> [--threads N] <material>... (for example KQK KRK KPK KQKR)
+public class TablebaseGenerator {
+    // Working value of a position; decided positions hold their distance to mate in plies
+    private static final int UNKNOWN = 0xFF;
+    private static final int ILLEGAL = 0xFE;
+    private static final int DRAW = 0xFD;
+    private static final int MAX_DTM = 0xFC;
+
+    // Positions per chunk, a multiple of 64 so no two chunks share a word of the candidate bitmap
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private final Path directory;
+    private final int threads;
+    private final Tablebase tablebase;
+
+    public TablebaseGenerator(Path directory, int threads) {
+        this.directory = directory;
+        this.threads = Math.max(1, threads);
+        this.tablebase = new Tablebase(directory);
+    }
+
+    // Generates the table for a material set after any it converts into; tables already on disk are kept
+    public void generate(String material) throws IOException {
+        String name = Tablebase.canonical(material);
+        if (Tablebase.isTrivialDraw(name) || Files.isRegularFile(directory.resolve(name + ".dtm"))) {
+            return;
+        }
+        for (String dependency : dependencies(name)) {
+            generate(dependency);
+        }
+        Files.createDirectories(directory);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tablebase-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            new Generation(name, executor).run();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Material sets reached by capturing any piece but a king, or by promoting a pawn
+    private static Set<String> dependencies(String name) {
+        Set<String> dependencies = new LinkedHashSet<>();
+        for (int i = 0; i < name.length(); i++) {
+            char piece = name.charAt(i);
+            if (piece == 'K') {
+                continue;
+            }
+            String before = name.substring(0, i);
+            String after = name.substring(i + 1);
+            dependencies.add(Tablebase.canonical(before + after));
+            if (piece == 'P') {
+                for (char promotion : new char[] { 'Q', 'R', 'B', 'N' }) {
+                    dependencies.add(Tablebase.canonical(before + promotion + after));
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    // Working state for one table
+    private final class Generation {
+        final String name;
+        final int[] codes;
+        final int pieceCount;
+        final int size;
+        final int sideBit;
+        final ExecutorService executor;
+
+        final byte[] values;
+        // Pass in which a position is decided by a capture or promotion alone, or 0
+        final byte[] pending;
+        // Positions with a move into one decided in the previous pass
+        final AtomicLongArray candidates;
+        final AtomicInteger lastPending = new AtomicInteger();
+        final ThreadLocal<Worker> workers;
+
+        Generation(String name, ExecutorService executor) {
+            this.name = name;
+            this.codes = Tablebase.pieceCodes(name);
+            this.pieceCount = codes.length;
+            this.size = Tablebase.positionCount(name);
+            this.sideBit = 1 << (6 * pieceCount);
+            this.executor = executor;
+            this.values = new byte[size];
+            this.pending = new byte[size];
+            this.candidates = new AtomicLongArray(size / 64);
+            this.workers = ThreadLocal.withInitial(() -> new Worker(pieceCount));
+        }
+
+        void run() throws IOException {
+            long start = System.nanoTime();
+            forEachChunk((worker, from, to) -> {
+                for (int index = from; index < to; index++) {
+                    initialize(worker, index);
+                }
+                return 0;
+            });
+
+            int passes = 0;
+            for (int depth = 1; ; depth++) {
+                if (depth > MAX_DTM) {
+                    throw new IllegalStateException(name + ": mate longer than " + MAX_DTM + " plies");
+                }
+                int decided = depth - 1;
+                forEachChunk((worker, from, to) -> {
+                    for (int index = from; index < to; index++) {
+                        if ((values[index] & 0xFF) == decided) {
+                            markPredecessors(worker, index);
+                        }
+                    }
+                    return 0;
+                });
+                int current = depth;
+                long resolved = forEachChunk((worker, from, to) -> resolve(worker, from, to, current));
+                passes = depth;
+                if (resolved == 0 && depth >= lastPending.get()) {
+                    break;
+                }
+            }
+            write(passes, start);
+        }
+
+        void initialize(Worker worker, int index) {
+            int side = worker.decode(index);
+            BitBoard bits = worker.bits;
+            if (!worker.setUp(codes, side) || bits.isInCheck(1 - side)) {
+                values[index] = (byte) ILLEGAL;
+                return;
+            }
+            int count = MoveGenerator.generate(bits, side, worker.moves);
+            if (count == 0) {
+                values[index] = (byte) (bits.isInCheck(side) ? 0 : DRAW);
+                return;
+            }
+            // A capture or promotion leaves this table, so its result comes from a smaller one
+            boolean quietMove = false;
+            boolean drawingExit = false;
+            int quickestWin = Integer.MAX_VALUE;
+            int slowestLoss = -1;
+            for (int i = 0; i < count; i++) {
+                int move = worker.moves[i];
+                if (!leavesTable(move)) {
+                    quietMove = true;
+                    continue;
+                }
+                int dtm = probeAfter(bits, move);
+                if (dtm == Tablebase.NO_MATE) {
+                    drawingExit = true;
+                } else if (dtm % 2 == 0) {
+                    quickestWin = Math.min(quickestWin, dtm + 1);
+                } else {
+                    slowestLoss = Math.max(slowestLoss, dtm + 1);
+                }
+            }
+            values[index] = (byte) UNKNOWN;
+            if (quickestWin != Integer.MAX_VALUE) {
+                setPending(index, quickestWin);
+            } else if (!quietMove) {
+                if (drawingExit) {
+                    values[index] = (byte) DRAW;
+                } else {
+                    setPending(index, slowestLoss);
+                }
+            }
+        }
+
+        // Flags every position from which the side that just moved could have reached this one
+        void markPredecessors(Worker worker, int index) {
+            int side = worker.decode(index);
+            int mover = 1 - side;
+            int[] squares = worker.squares;
+            long occupied = 0;
+            for (int square : squares) {
+                occupied |= 1L << square;
+            }
+            int weight = 1;
+            for (int slot = pieceCount - 1; slot >= 0; slot--, weight <<= 6) {
+                int code = codes[slot];
+                if (BitBoard.colorOf(code) != mover) {
+                    continue;
+                }
+                int square = squares[slot];
+                int type = BitBoard.typeOf(code);
+                long origins = type == BitBoard.PAWN
+                        ? pawnOrigins(mover, square, occupied)
+                        : Attacks.attacks(type, mover, square, occupied) & ~occupied;
+                int base = (index ^ sideBit) - square * weight;
+                while (origins != 0) {
+                    int origin = Long.numberOfTrailingZeros(origins);
+                    origins &= origins - 1;
+                    int predecessor = base + origin * weight;
+                    int word = predecessor >>> 6;
+                    long bit = 1L << predecessor;
+                    if ((candidates.get(word) & bit) == 0) {
+                        candidates.getAndAccumulate(word, bit, (a, b) -> a | b);
+                    }
+                }
+            }
+        }
+
+        // Decides the undecided positions of one chunk in this pass and clears its candidate flags
+        long resolve(Worker worker, int from, int to, int depth) {
+            long resolved = 0;
+            for (int index = from; index < to; index++) {
+                if ((values[index] & 0xFF) != UNKNOWN) {
+                    continue;
+                }
+                boolean candidate = (candidates.get(index >>> 6) & (1L << index)) != 0;
+                if ((pending[index] & 0xFF) == depth || (candidate && depth % 2 == 1)) {
+                    // Odd passes find wins: a move reaches a position lost in the previous pass
+                    values[index] = (byte) depth;
+                    resolved++;
+                } else if (candidate && isLostIn(worker, index, depth)) {
+                    values[index] = (byte) depth;
+                    resolved++;
+                }
+            }
+            for (int word = from >>> 6; word < to >>> 6; word++) {
+                candidates.set(word, 0);
+            }
+            return resolved;
+        }
+
+        // True if every move leads to a won position and the slowest of them was decided in the last pass.
+        // When a capture or promotion is slower still, the loss is left pending for a later pass
+        boolean isLostIn(Worker worker, int index, int depth) {
+            int side = worker.decode(index);
+            BitBoard bits = worker.bits;
+            worker.setUp(codes, side);
+            int count = MoveGenerator.generate(bits, side, worker.moves);
+            int slowest = -1;
+            for (int i = 0; i < count; i++) {
+                int move = worker.moves[i];
+                int dtm;
+                if (leavesTable(move)) {
+                    dtm = probeAfter(bits, move);
+                    if (dtm == Tablebase.NO_MATE) {
+                        return false;
+                    }
+                } else {
+                    dtm = values[successor(worker, index, move)] & 0xFF;
+                    if (dtm > MAX_DTM) {
+                        return false;
+                    }
+                }
+                if (dtm % 2 == 0) {
+                    return false;
+                }
+                slowest = Math.max(slowest, dtm);
+            }
+            if (slowest + 1 == depth) {
+                return true;
+            }
+            setPending(index, slowest + 1);
+            return false;
+        }
+
+        // Index after a quiet move: the moved piece's square changes and the other side is to move
+        int successor(Worker worker, int index, int move) {
+            int from = Move.from(move);
+            int weight = 1;
+            for (int slot = pieceCount - 1; slot >= 0; slot--, weight <<= 6) {
+                if (worker.squares[slot] == from) {
+                    return (index ^ sideBit) + (Move.to(move) - from) * weight;
+                }
+            }
+            throw new IllegalStateException("No piece on " + Move.squareName(from));
+        }
+
+        int probeAfter(BitBoard bits, int move) {
+            bits.make(move);
+            int dtm = tablebase.probeDtm(bits);
+            bits.unmake();
+            if (dtm == Tablebase.UNKNOWN) {
+                throw new IllegalStateException(name + ": no table for the position after " + Move.toString(move));
+            }
+            if (dtm >= MAX_DTM) {
+                throw new IllegalStateException(name + ": mate longer than " + MAX_DTM + " plies");
+            }
+            return dtm;
+        }
+
+        void setPending(int index, int depth) {
+            pending[index] = (byte) depth;
+            lastPending.accumulateAndGet(depth, Math::max);
+        }
+
+        long forEachChunk(ChunkTask task) {
+            List<Callable<Long>> chunks = new ArrayList<>();
+            for (int start = 0; start < size; start += CHUNK_SIZE) {
+                int from = start;
+                int to = Math.min(size, start + CHUNK_SIZE);
+                chunks.add(() -> task.run(workers.get(), from, to));
+            }
+            long total = 0;
+            try {
+                for (Future<Long> result : executor.invokeAll(chunks)) {
+                    total += result.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Tablebase generation interrupted", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+            }
+            return total;
+        }
+
+        void write(int passes, long start) throws IOException {
+            byte[] wdl = new byte[size / 4];
+            long wins = 0;
+            long draws = 0;
+            long losses = 0;
+            int longest = 0;
+            for (int index = 0; index < size; index++) {
+                int value = values[index] & 0xFF;
+                int result;
+                if (value == ILLEGAL) {
+                    result = Tablebase.WDL_ILLEGAL;
+                } else if (value > MAX_DTM) {
+                    result = Tablebase.WDL_DRAW;
+                    draws++;
+                } else if (value % 2 == 1) {
+                    result = Tablebase.WDL_WIN;
+                    wins++;
+                    longest = Math.max(longest, value);
+                } else {
+                    result = Tablebase.WDL_LOSS;
+                    losses++;
+                }
+                wdl[index >>> 2] |= (byte) (result << ((index & 3) * 2));
+                values[index] = (byte) (value > MAX_DTM ? Tablebase.DTM_NONE : value);
+            }
+            // The .dtm file is written last, so a table is only picked up once both files are complete
+            writeFile(directory.resolve(name + ".wdl"), wdl);
+            writeFile(directory.resolve(name + ".dtm"), values);
+            System.out.printf("%s: %d positions (%d won, %d drawn, %d lost), longest mate %d plies, %d passes in %d ms%n",
+                    name, wins + draws + losses, wins, draws, losses, longest, passes,
+                    (System.nanoTime() - start) / 1_000_000L);
+        }
+    }
+
+    // Squares a pawn of the given color could have pushed from to reach the square
+    private static long pawnOrigins(int color, int square, long occupied) {
+        int back = color == BitBoard.WHITE ? 8 : -8;
+        int row = BitBoard.row(square);
+        // A pawn never stands on its first rank, and only reaches its fourth rank with a double push
+        int firstRow = color == BitBoard.WHITE ? 7 : 0;
+        int doublePushRow = color == BitBoard.WHITE ? 4 : 3;
+        int single = square + back;
+        if (BitBoard.row(single) == firstRow || (occupied & (1L << single)) != 0) {
+            return 0;
+        }
+        long origins = 1L << single;
+        if (row == doublePushRow && (occupied & (1L << (single + back))) == 0) {
+            origins |= 1L << (single + back);
+        }
+        return origins;
+    }
+
+    private static boolean leavesTable(int move) {
+        return Move.isCapture(move) || Move.isEnPassant(move) || Move.isPromotion(move);
+    }
+
+    private static void writeFile(Path path, byte[] contents) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(contents);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private interface ChunkTask {
+        long run(Worker worker, int from, int to);
+    }
+
+    // Per-thread board and buffers
+    private static final class Worker {
+        final BitBoard bits = new BitBoard();
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        final int[] squares;
+
+        Worker(int pieceCount) {
+            this.squares = new int[pieceCount];
+        }
+
+        // Fills the squares from an index and returns the side to move
+        int decode(int index) {
+            for (int slot = squares.length - 1; slot >= 0; slot--) {
+                squares[slot] = index & 63;
+                index >>>= 6;
+            }
+            return index;
+        }
+
+        // Places the decoded pieces; false if two share a square or a pawn is on its last or first rank.
+        // En passant never arises on the board, so it is not modelled even in tables with a pawn each
+        boolean setUp(int[] codes, int side) {
+            bits.clear();
+            long occupied = 0;
+            for (int slot = 0; slot < codes.length; slot++) {
+                int square = squares[slot];
+                int row = BitBoard.row(square);
+                if ((occupied & (1L << square)) != 0
+                        || (BitBoard.typeOf(codes[slot]) == BitBoard.PAWN && (row == 0 || row == 7))) {
+                    return false;
+                }
+                occupied |= 1L << square;
+                bits.put(square, codes[slot]);
+            }
+            bits.setSideToMove(side);
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TablebaseGenerator <directory> [--threads N] <material>...");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> materials = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                materials.add(args[i].toUpperCase());
+            }
+        }
+        TablebaseGenerator generator = new TablebaseGenerator(Paths.get(args[0]), threads);
+        for (String material : materials) {
+            generator.generate(material);
+        }
+    }
+}
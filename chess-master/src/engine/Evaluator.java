@@ -0,0 +1,107 @@
+package engine;
+
+import game.BitBoard;
+import game.PieceSquareTables;
+
+// Static evaluation in centipawns from the point of view of the side to move.
+// Material and piece-square terms are maintained incrementally by the board; pawn structure is cached by pawn key
+public class Evaluator {
+    private static final int DOUBLED_MIDDLEGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDDLEGAME = -10;
+    private static final int ISOLATED_ENDGAME = -15;
+    // Indexed by how many squares the pawn has advanced from its starting rank
+    private static final int[] PASSED_MIDDLEGAME = { 0, 5, 10, 15, 25, 40, 60, 0 };
+    private static final int[] PASSED_ENDGAME = { 0, 10, 20, 35, 60, 100, 150, 0 };
+
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+    // Squares in front of a pawn on its own and adjacent files; no enemy pawn there means it is passed
+    private static final long[][] PASSED_MASKS = new long[2][64];
+
+    static {
+        for (int column = 0; column < 8; column++) {
+            FILES[column] = 0x0101010101010101L << column;
+        }
+        for (int column = 0; column < 8; column++) {
+            ADJACENT_FILES[column] = (column > 0 ? FILES[column - 1] : 0L) | (column < 7 ? FILES[column + 1] : 0L);
+        }
+        for (int square = 0; square < 64; square++) {
+            long span = FILES[BitBoard.column(square)] | ADJACENT_FILES[BitBoard.column(square)];
+            int row = BitBoard.row(square);
+            // White pawns advance towards row 0, black pawns towards row 7
+            long above = row == 0 ? 0L : -1L >>> (64 - row * 8);
+            long below = row == 7 ? 0L : -1L << ((row + 1) * 8);
+            PASSED_MASKS[BitBoard.WHITE][square] = span & above;
+            PASSED_MASKS[BitBoard.BLACK][square] = span & below;
+        }
+    }
+
+    private final PawnHashTable pawnTable;
+
+    public Evaluator() {
+        this(new PawnHashTable(PawnHashTable.DEFAULT_SIZE_KB));
+    }
+
+    public Evaluator(PawnHashTable pawnTable) {
+        this.pawnTable = pawnTable;
+    }
+
+    public PawnHashTable getPawnTable() {
+        return pawnTable;
+    }
+
+    public int evaluate(BitBoard bits) {
+        int middlegame = bits.middlegameScore();
+        int endgame = bits.endgameScore();
+
+        long pawnKey = bits.pawnKey();
+        if (pawnTable.contains(pawnKey)) {
+            middlegame += pawnTable.middlegame(pawnKey);
+            endgame += pawnTable.endgame(pawnKey);
+        } else {
+            long pawnScore = pawnStructure(bits);
+            int pawnMiddlegame = (int) (pawnScore >> 32);
+            int pawnEndgame = (int) pawnScore;
+            pawnTable.store(pawnKey, pawnMiddlegame, pawnEndgame);
+            middlegame += pawnMiddlegame;
+            endgame += pawnEndgame;
+        }
+
+        int score = PieceSquareTables.taper(middlegame, endgame, bits.phase());
+        return bits.sideToMove() == BitBoard.WHITE ? score : -score;
+    }
+
+    // Doubled, isolated and passed pawn terms from white's point of view, middlegame in the high half
+    private static long pawnStructure(BitBoard bits) {
+        int middlegame = 0;
+        int endgame = 0;
+        for (int color = BitBoard.WHITE; color <= BitBoard.BLACK; color++) {
+            int sign = color == BitBoard.WHITE ? 1 : -1;
+            long own = bits.pieces(color, BitBoard.PAWN);
+            long enemy = bits.pieces(1 - color, BitBoard.PAWN);
+            for (int column = 0; column < 8; column++) {
+                int count = Long.bitCount(own & FILES[column]);
+                if (count > 1) {
+                    middlegame += sign * DOUBLED_MIDDLEGAME * (count - 1);
+                    endgame += sign * DOUBLED_ENDGAME * (count - 1);
+                }
+                if (count > 0 && (own & ADJACENT_FILES[column]) == 0) {
+                    middlegame += sign * ISOLATED_MIDDLEGAME * count;
+                    endgame += sign * ISOLATED_ENDGAME * count;
+                }
+            }
+            long pawns = own;
+            while (pawns != 0) {
+                int square = Long.numberOfTrailingZeros(pawns);
+                pawns &= pawns - 1;
+                if ((PASSED_MASKS[color][square] & enemy) == 0) {
+                    int advanced = Math.max(0, color == BitBoard.WHITE ? 6 - BitBoard.row(square) : BitBoard.row(square) - 1);
+                    middlegame += sign * PASSED_MIDDLEGAME[advanced];
+                    endgame += sign * PASSED_ENDGAME[advanced];
+                }
+            }
+        }
+        return ((long) middlegame << 32) | (endgame & 0xFFFFFFFFL);
+    }
+}
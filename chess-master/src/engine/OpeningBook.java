@@ -0,0 +1,179 @@
+package engine;
+
+import game.BitBoard;
+import game.ChessGame;
+import game.Fen;
+import game.Move;
+import game.MoveGenerator;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Opening book read straight from a memory-mapped file. Entries use the Polyglot layout: 16 bytes each,
+// big-endian key (8), move (2), weight (2) and learn (4), sorted by key as an unsigned number.
+// Keys are this project's Zobrist keys rather than Polyglot's, so books have to come from OpeningBookBuilder.
+// A lookup is a binary search over the mapping; nothing on the heap grows with the book.
+public class OpeningBook implements AutoCloseable {
+    public static final int ENTRY_SIZE = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer entries;
+    private final int entryCount;
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+
+    // Lookups in main are folded into this field so the JIT cannot drop them
+    private static volatile long sink;
+
+    public OpeningBook(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size % ENTRY_SIZE != 0 || size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Not an opening book: " + path);
+        }
+        this.entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        this.entryCount = (int) (size / ENTRY_SIZE);
+    }
+
+    // Opens the book if the file exists, otherwise returns null
+    public static OpeningBook openIfExists(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            return new OpeningBook(path);
+        } catch (IOException e) {
+            System.err.println("Error opening book " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    // Book move with the highest weight for the position, or Move.NONE if the position is not in the book
+    public synchronized int bestMove(BitBoard bits) {
+        int best = Move.NONE;
+        int bestWeight = -1;
+        int first = firstEntry(bits.key());
+        if (first == entryCount || key(first) != bits.key()) {
+            return Move.NONE;
+        }
+        int count = MoveGenerator.generate(bits, bits.sideToMove(), moveBuffer);
+        for (int i = first; i < entryCount && key(i) == bits.key(); i++) {
+            int move = toMove(bookMove(i), count);
+            if (move != Move.NONE && weight(i) > bestWeight) {
+                best = move;
+                bestWeight = weight(i);
+            }
+        }
+        return best;
+    }
+
+    // Book move picked at random in proportion to the weights, or Move.NONE if the position is not in the book
+    public synchronized int randomMove(BitBoard bits, SplittableRandom random) {
+        int first = firstEntry(bits.key());
+        long total = 0;
+        for (int i = first; i < entryCount && key(i) == bits.key(); i++) {
+            total += weight(i);
+        }
+        if (total == 0) {
+            return bestMove(bits);
+        }
+        long pick = random.nextLong(total);
+        for (int i = first; i < entryCount && key(i) == bits.key(); i++) {
+            pick -= weight(i);
+            if (pick < 0) {
+                int move = toMove(bookMove(i), MoveGenerator.generate(bits, bits.sideToMove(), moveBuffer));
+                return move != Move.NONE ? move : bestMove(bits);
+            }
+        }
+        return Move.NONE;
+    }
+
+    // Index of the first entry whose key is not below the given one, comparing keys as unsigned numbers
+    private int firstEntry(long key) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(key(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long key(int index) {
+        return entries.getLong(index * ENTRY_SIZE);
+    }
+
+    private int bookMove(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 8) & 0xFFFF;
+    }
+
+    private int weight(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 10) & 0xFFFF;
+    }
+
+    // The legal move in the move buffer matching a book move, so a key collision can never produce an illegal move
+    private int toMove(int bookMove, int count) {
+        for (int i = 0; i < count; i++) {
+            if (encode(moveBuffer[i]) == bookMove) {
+                return moveBuffer[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    // Polyglot move encoding: to file, to rank, from file, from rank (3 bits each, rank 1 = 0), then the
+    // promotion piece (knight 1 to queen 4). Castling is written as the king capturing its own rook
+    public static int encode(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int toColumn = BitBoard.column(to);
+        if (Move.isCastling(move)) {
+            toColumn = toColumn == 6 ? 7 : 0;
+        }
+        int promotion = Move.isPromotion(move) ? Move.promotionType(move) : 0;
+        return toColumn | ((7 - BitBoard.row(to)) << 3) | (BitBoard.column(from) << 6)
+                | ((7 - BitBoard.row(from)) << 9) | (promotion << 12);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Lists the book moves for a position and times the lookup. Usage: OpeningBook <book.bin> [fen]
+    public static void main(String[] args) throws IOException {
+        String fen = args.length > 1 ? String.join(" ", Arrays.copyOfRange(args, 1, args.length)) : Fen.START_POSITION;
+        ChessGame game = new ChessGame(fen);
+        BitBoard bits = game.getBoard().getBitBoard();
+        try (OpeningBook book = new OpeningBook(Paths.get(args[0]))) {
+            System.out.println(book.getEntryCount() + " entries");
+            for (int i = book.firstEntry(bits.key()); i < book.entryCount && book.key(i) == bits.key(); i++) {
+                int move = book.toMove(book.bookMove(i), MoveGenerator.generate(bits, bits.sideToMove(), book.moveBuffer));
+                System.out.println((move == Move.NONE ? "?" : Move.toString(move)) + " weight " + book.weight(i));
+            }
+
+            int iterations = 1_000_000;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += book.bestMove(bits);
+            }
+            double nanos = (double) (System.nanoTime() - start) / iterations;
+            System.out.printf("best move %s, %.0f ns per lookup%n", Move.toString(book.bestMove(bits)), nanos);
+        }
+    }
+}
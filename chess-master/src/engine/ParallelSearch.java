@@ -0,0 +1,163 @@
+package engine;
+
+import game.ChessGame;
+import game.Fen;
+import game.Move;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Lazy SMP: every thread searches the same root on its own copy of the game and they cooperate
+// only through the shared transposition table. Thread 0 owns the time budget; when it finishes
+// the helpers are stopped and the deepest completed result wins, ties going to the lowest thread.
+public class ParallelSearch implements AutoCloseable {
+    private final TranspositionTable table;
+    private final int threadCount;
+    private final ExecutorService executor;
+    // One game and one search per thread, created on the first search and reused for every later one
+    private final List<ChessGame> games = new ArrayList<>();
+    private final List<Search> searches = new ArrayList<>();
+    private Tablebase tablebase;
+    private long[] threadNodes = new long[0];
+
+    public ParallelSearch(TranspositionTable table, int threadCount) {
+        this.table = table;
+        this.threadCount = Math.max(1, threadCount);
+        this.executor = Executors.newFixedThreadPool(this.threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "search-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    // Used by every thread, so their scores agree at positions the tablebase covers
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    // Nodes searched by each thread during the last search
+    public long[] getThreadNodes() {
+        return threadNodes.clone();
+    }
+
+    public SearchResult search(ChessGame game, SearchLimits limits) {
+        long start = System.nanoTime();
+        List<Future<SearchResult>> futures = new ArrayList<>();
+        synchronized (searches) {
+            for (int i = 0; i < threadCount; i++) {
+                if (i == games.size()) {
+                    games.add(new ChessGame(game));
+                    searches.add(new Search(games.get(i), table));
+                } else {
+                    games.get(i).copyFrom(game);
+                }
+                searches.get(i).setTablebase(tablebase);
+                searches.get(i).reset();
+            }
+        }
+        // Once for all threads, so entries stored by thread 0 are not aged by its own helpers
+        table.newSearch();
+
+        // Helpers run until thread 0 stops them; thread 0's time and node budget is only a backstop, for a
+        // helper that somehow misses its stop request
+        SearchLimits helperLimits = new SearchLimits(limits.getMaxDepth(), limits.getMaxTimeMillis(), limits.getMaxNodes());
+        for (int i = 1; i < threadCount; i++) {
+            Search helper = searches.get(i);
+            int firstDepth = 1 + (i % 2);
+            futures.add(executor.submit(() -> helper.search(helperLimits, firstDepth)));
+        }
+
+        SearchResult best = searches.get(0).search(limits, 1);
+        stopHelpers();
+        threadNodes = new long[threadCount];
+        threadNodes[0] = best.getNodes();
+        long totalNodes = best.getNodes();
+        for (int i = 0; i < futures.size(); i++) {
+            SearchResult result = join(futures.get(i));
+            threadNodes[i + 1] = result.getNodes();
+            totalNodes += result.getNodes();
+            // A helper that never completed an iteration reports depth 0, so it cannot win here
+            if (result.getDepth() > best.getDepth() && result.getBestMove() != Move.NONE) {
+                best = result;
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+        return new SearchResult(best.getBestMove(), best.getScore(), best.getDepth(), totalNodes, elapsedMillis,
+                best.getPrincipalVariation(), threadCount);
+    }
+
+    public void stop() {
+        synchronized (searches) {
+            for (Search search : searches) {
+                search.stop();
+            }
+        }
+    }
+
+    private void stopHelpers() {
+        synchronized (searches) {
+            for (int i = 1; i < searches.size(); i++) {
+                searches.get(i).stop();
+            }
+        }
+    }
+
+    private static SearchResult join(Future<SearchResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for search threads", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search thread failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+        executor.shutdownNow();
+    }
+
+    // Reports node throughput for 1, 2, 4, ... threads up to the requested count.
+    // Usage: ParallelSearch [threads] [millis per run] [fen]
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 5000;
+        String fen = args.length > 2 ? String.join(" ", Arrays.copyOfRange(args, 2, args.length))
+                : "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+        // Untimed warm-up so the single-thread baseline is not measured on cold, interpreted code
+        ChessGame warmup = new ChessGame();
+        Fen.load(fen, warmup.getBoard().getBitBoard());
+        new Search(warmup).search(SearchLimits.time(millis));
+
+        long baseline = 0;
+        for (int step = 1; ; step *= 2) {
+            int threads = Math.min(step, maxThreads);
+            ChessGame game = new ChessGame();
+            Fen.load(fen, game.getBoard().getBitBoard());
+            try (ParallelSearch search = new ParallelSearch(new TranspositionTable(Search.DEFAULT_TABLE_MB * threads), threads)) {
+                SearchResult result = search.search(game, SearchLimits.time(millis));
+                if (threads == 1) {
+                    baseline = Math.max(1, result.getNodesPerSecond());
+                }
+                System.out.printf("threads %2d: %s (scaling %.2fx)%n", threads, result,
+                        (double) result.getNodesPerSecond() / baseline);
+            }
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+    }
+}
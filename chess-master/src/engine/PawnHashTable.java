@@ -0,0 +1,77 @@
+package engine;
+
+import java.util.Arrays;
+
+// Cache of pawn-structure scores keyed by BitBoard.pawnKey(). Pawns change in only a small fraction
+// of moves, so most lookups during a search hit. Owned by one evaluator and not thread-safe.
+public class PawnHashTable {
+    public static final int DEFAULT_SIZE_KB = 512;
+
+    private static final int BYTES_PER_ENTRY = 16;
+
+    private final long[] keys;
+    // Middlegame score in the high half, endgame score in the low half
+    private final long[] scores;
+    private final int mask;
+    private long probes;
+    private long hits;
+
+    public PawnHashTable(int sizeKb) {
+        long entries = Long.highestOneBit(Math.max(1, Math.max(1, sizeKb) * 1024L / BYTES_PER_ENTRY));
+        this.keys = new long[(int) entries];
+        this.scores = new long[(int) entries];
+        this.mask = (int) entries - 1;
+        // Key 0 is a board without pawns, so empty slots must hold some other key
+        Arrays.fill(keys, -1L);
+    }
+
+    // Counts a probe; when it returns true, middlegame and endgame read the cached scores
+    public boolean contains(long key) {
+        probes++;
+        if (keys[(int) key & mask] == key) {
+            hits++;
+            return true;
+        }
+        return false;
+    }
+
+    public int middlegame(long key) {
+        return (int) (scores[(int) key & mask] >> 32);
+    }
+
+    public int endgame(long key) {
+        return (int) scores[(int) key & mask];
+    }
+
+    public void store(long key, int middlegame, int endgame) {
+        int index = (int) key & mask;
+        keys[index] = key;
+        scores[index] = ((long) middlegame << 32) | (endgame & 0xFFFFFFFFL);
+    }
+
+    public int getEntryCount() {
+        return keys.length;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public double getHitRate() {
+        return probes == 0 ? 0.0 : (double) hits / probes;
+    }
+
+    public void resetStatistics() {
+        probes = 0;
+        hits = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries, %d probes, %.1f%% hits", keys.length, probes, getHitRate() * 100);
+    }
+}
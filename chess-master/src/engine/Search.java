@@ -0,0 +1,431 @@
+package engine;
+
+import game.BitBoard;
+import game.ChessGame;
+import game.Move;
+import game.MoveGenerator;
+
+import java.util.Arrays;
+
+// Iterative-deepening principal variation search with quiescence, driven through ChessGame's move API.
+// One instance searches one game on one thread; concurrent games each use their own Search.
+public class Search {
+    public static final int MAX_PLY = 128;
+    public static final int MATE = 32000;
+    public static final int INFINITY = 32001;
+
+    private static final int MATE_BOUND = MATE - MAX_PLY;
+    private static final int CHECK_INTERVAL = 2047;
+
+    public static final int DEFAULT_TABLE_MB = 16;
+
+    // Move ordering bands, highest first
+    private static final int HASH_MOVE_SCORE = 4_000_000;
+    private static final int PROMOTION_SCORE = 2_000_000;
+    private static final int CAPTURE_SCORE = 1_000_000;
+    private static final int KILLER_SCORE = 900_000;
+    private static final int HISTORY_MAX = 800_000;
+    // Captures that lose material in the exchange go after every quiet move
+    private static final int LOSING_CAPTURE_SCORE = -CAPTURE_SCORE;
+
+    private final ChessGame game;
+    private final BitBoard bits;
+    private final Evaluator evaluator;
+    private final TranspositionTable table;
+    private Tablebase tablebase;
+
+    private final int[][] moveBuffers = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] scoreBuffers = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[2][64 * 64];
+    private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    private int rootDepth;
+    // Score of the root move in pvTable[0], valid while pvLength[0] > 0
+    private int rootScore;
+    private volatile boolean stopRequested;
+    private boolean stopped;
+
+    public Search(ChessGame game) {
+        this(game, new TranspositionTable(DEFAULT_TABLE_MB));
+    }
+
+    // The table may be shared with other searches, including ones running on other threads
+    public Search(ChessGame game, TranspositionTable table) {
+        this(game, table, new Evaluator());
+    }
+
+    public Search(ChessGame game, TranspositionTable table, Evaluator evaluator) {
+        this.game = game;
+        this.bits = game.getBoard().getBitBoard();
+        this.table = table;
+        this.evaluator = evaluator;
+    }
+
+    // Positions the tablebase covers are scored from it instead of being searched
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    public static boolean isMateScore(int score) {
+        return Math.abs(score) >= MATE_BOUND;
+    }
+
+    // Can be called from another thread to end the search early; the last completed iteration is returned
+    public void stop() {
+        stopRequested = true;
+    }
+
+    // Clears an earlier stop request so the instance can search again
+    public void reset() {
+        stopRequested = false;
+    }
+
+    public SearchResult search(SearchLimits limits) {
+        reset();
+        table.newSearch();
+        return search(limits, 1);
+    }
+
+    // Helper threads of a parallel search start at different depths so they do not all follow the same tree.
+    // A stop requested before this starts is kept, so a helper stopped before it was scheduled ends at once.
+    // The caller moves the table on to a new generation, once for all the threads sharing it.
+    SearchResult search(SearchLimits limits, int firstDepth) {
+        long start = System.nanoTime();
+        nodes = 0;
+        nodeLimit = limits.getMaxNodes();
+        deadline = limits.getMaxTimeMillis() == SearchLimits.UNLIMITED
+                ? Long.MAX_VALUE : start + limits.getMaxTimeMillis() * 1_000_000L;
+        stopped = false;
+        for (int[] killer : killers) {
+            Arrays.fill(killer, Move.NONE);
+        }
+        for (int[] scores : history) {
+            Arrays.fill(scores, 0);
+        }
+
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        int rootCount = game.generateLegalMoves(rootMoves);
+        if (rootCount == 0) {
+            int score = bits.isInCheck(bits.sideToMove()) ? -MATE : 0;
+            return new SearchResult(Move.NONE, score, 0, 0, 0, new int[0]);
+        }
+        if (tablebase != null) {
+            int dtm = tablebase.probeDtm(bits);
+            int move = dtm == Tablebase.UNKNOWN ? Move.NONE : tablebase.bestMove(bits);
+            if (move != Move.NONE) {
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+                return new SearchResult(move, tablebaseScore(dtm, 0), 0, 0, elapsedMillis, new int[] { move });
+            }
+        }
+
+        // Until an iteration completes, the result is just a legal move with the static evaluation and depth 0
+        int bestMove = rootMoves[0];
+        int bestScore = evaluator.evaluate(bits);
+        int completedDepth = 0;
+        int[] bestLine = { bestMove };
+        for (int depth = Math.min(firstDepth, limits.getMaxDepth()); depth <= limits.getMaxDepth(); depth++) {
+            rootDepth = depth;
+            int score = alphaBeta(depth, -INFINITY, INFINITY, 0);
+            if (stopped) {
+                // Root moves searched in full before the stop have real scores at this depth. The hash move, usually
+                // the last iteration's best, goes first, so the best of them has been measured against it.
+                if (pvLength[0] > 0) {
+                    bestMove = pvTable[0][0];
+                    bestScore = rootScore;
+                    bestLine = Arrays.copyOf(pvTable[0], pvLength[0]);
+                }
+                break;
+            }
+            bestMove = pvTable[0][0];
+            bestScore = score;
+            bestLine = Arrays.copyOf(pvTable[0], pvLength[0]);
+            completedDepth = depth;
+            if (rootCount == 1 || isMateScore(score)) {
+                break;
+            }
+            // The next iteration costs several times this one, so do not start it past half the budget
+            long now = System.nanoTime();
+            if (deadline != Long.MAX_VALUE && now - start > (deadline - start) / 2) {
+                break;
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+        return new SearchResult(bestMove, bestScore, completedDepth, nodes, elapsedMillis, bestLine);
+    }
+
+    private int alphaBeta(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if (shouldStop()) {
+            return 0;
+        }
+
+        int side = bits.sideToMove();
+        boolean inCheck = bits.isInCheck(side);
+        // Without a cap, a perpetual check keeps the depth constant and the line runs on to MAX_PLY
+        if (inCheck && ply < 2 * rootDepth) {
+            depth++;
+        }
+        // A repeated position is a draw straight away, since the side that repeated it could keep doing so
+        if (ply > 0 && (bits.isRepetition() || bits.hasInsufficientMaterial()
+                || (bits.halfmoveClock() >= 100 && (!inCheck || MoveGenerator.hasLegalMove(bits, side, moveBuffers[ply]))))) {
+            return 0;
+        }
+        if (ply > 0 && tablebase != null) {
+            int dtm = tablebase.probeDtm(bits);
+            if (dtm != Tablebase.UNKNOWN) {
+                nodes++;
+                return tablebaseScore(dtm, ply);
+            }
+        }
+        if (depth <= 0) {
+            return quiescence(alpha, beta, ply);
+        }
+        nodes++;
+        if (ply >= MAX_PLY - 1) {
+            return evaluator.evaluate(bits);
+        }
+
+        long key = game.positionKey();
+        long entry = table.probe(key);
+        int hashMove = Move.NONE;
+        if (entry != TranspositionTable.MISS) {
+            hashMove = TranspositionTable.move(entry);
+            // Cut off on stored bounds only in null-window nodes, so the principal variation stays intact
+            if (ply > 0 && beta - alpha == 1 && TranspositionTable.depth(entry) >= depth) {
+                int stored = fromTableScore(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && stored >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && stored <= alpha)) {
+                    return stored;
+                }
+            }
+        }
+
+        int[] moves = moveBuffers[ply];
+        int count = game.generateLegalMoves(moves);
+        if (count == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(moves, scoreBuffers[ply], count, ply, side, hashMove);
+
+        int originalAlpha = alpha;
+        int bestMove = Move.NONE;
+        int bestScore = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(moves, scoreBuffers[ply], i, count);
+            game.makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                // Null-window probe first; only re-search with the full window if the move looks better
+                score = -alphaBeta(depth - 1, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && score < beta) {
+                    score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            game.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    updatePrincipalVariation(move, ply);
+                    if (ply == 0) {
+                        rootScore = score;
+                    }
+                    if (alpha >= beta) {
+                        if (!Move.isCapture(move) && !Move.isPromotion(move)) {
+                            rememberQuietCutoff(move, ply, side, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER_BOUND
+                : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        table.store(key, bestMove, toTableScore(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    // Exact score for a distance to mate in plies from the side to move, odd when it mates
+    private static int tablebaseScore(int dtm, int ply) {
+        if (dtm == Tablebase.NO_MATE) {
+            return 0;
+        }
+        return dtm % 2 == 1 ? MATE - ply - dtm : -MATE + ply + dtm;
+    }
+
+    // Mate scores are stored relative to the node rather than the root, so they stay valid at any ply
+    private static int toTableScore(int score, int ply) {
+        if (score >= MATE_BOUND) return score + ply;
+        if (score <= -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int fromTableScore(int score, int ply) {
+        if (score >= MATE_BOUND) return score - ply;
+        if (score <= -MATE_BOUND) return score + ply;
+        return score;
+    }
+
+    private int quiescence(int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if (shouldStop()) {
+            return 0;
+        }
+        nodes++;
+        if (bits.hasInsufficientMaterial()) {
+            return 0;
+        }
+
+        int side = bits.sideToMove();
+        boolean inCheck = bits.isInCheck(side);
+        if (ply >= MAX_PLY - 1) {
+            return evaluator.evaluate(bits);
+        }
+
+        int bestScore;
+        int[] moves = moveBuffers[ply];
+        int count;
+        if (inCheck) {
+            // No standing pat while in check: every evasion must be looked at to spot mates
+            bestScore = -INFINITY;
+            count = game.generateLegalMoves(moves);
+            if (count == 0) {
+                return -MATE + ply;
+            }
+        } else {
+            bestScore = evaluator.evaluate(bits);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            if (bestScore > alpha) {
+                alpha = bestScore;
+            }
+            count = game.generateCaptures(moves);
+        }
+        scoreMoves(moves, scoreBuffers[ply], count, ply, side, Move.NONE);
+
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(moves, scoreBuffers[ply], i, count);
+            if (!inCheck && scoreBuffers[ply][i] < 0) {
+                break; // Only captures that lose material are left; standing pat is assumed to be better
+            }
+            game.makeMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            game.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    private boolean shouldStop() {
+        if (stopped) {
+            return true;
+        }
+        // The node budget is exact; the clock and stop requests are only looked at every few thousand nodes
+        if (nodes >= nodeLimit
+                || ((nodes & CHECK_INTERVAL) == 0 && (stopRequested || System.nanoTime() >= deadline))) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    private void scoreMoves(int[] moves, int[] scores, int count, int ply, int side, int hashMove) {
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int score;
+            if (move == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (Move.isPromotion(move)) {
+                score = PROMOTION_SCORE + Move.promotionType(move);
+            } else if (Move.isCapture(move)) {
+                // MVV-LVA: most valuable victim first, then least valuable attacker
+                int victim = Move.isEnPassant(move) ? BitBoard.PAWN : BitBoard.typeOf(bits.pieceAt(Move.to(move)));
+                int attacker = BitBoard.typeOf(bits.pieceAt(Move.from(move)));
+                int order = victim * 8 + (BitBoard.KING - attacker);
+                // Taking an equal or bigger piece can never lose material, so only the rest needs an exchange check
+                boolean losing = BitBoard.PIECE_VALUES[victim] < BitBoard.PIECE_VALUES[attacker] && bits.see(move) < 0;
+                score = (losing ? LOSING_CAPTURE_SCORE : CAPTURE_SCORE) + order;
+            } else if (move == killers[ply][0]) {
+                score = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = history[side][Move.from(move) * 64 + Move.to(move)];
+            }
+            scores[i] = score;
+        }
+    }
+
+    // Selection sort step: moves the best remaining move to index i, which is cheap when a cutoff comes early
+    private static int pickNext(int[] moves, int[] scores, int i, int count) {
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (scores[j] > scores[best]) {
+                best = j;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[i];
+        moves[i] = move;
+        int score = scores[best];
+        scores[best] = scores[i];
+        scores[i] = score;
+        return move;
+    }
+
+    private void rememberQuietCutoff(int move, int ply, int side, int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int index = Move.from(move) * 64 + Move.to(move);
+        history[side][index] += depth * depth;
+        if (history[side][index] > HISTORY_MAX) {
+            for (int[] scores : history) {
+                for (int i = 0; i < scores.length; i++) {
+                    scores[i] /= 2;
+                }
+            }
+        }
+    }
+
+    private void updatePrincipalVariation(int move, int ply) {
+        pvTable[ply][0] = move;
+        System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,36 @@
+package engine;
+
+// Budget for one search; the search stops at whichever limit is reached first
+public class SearchLimits {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final int maxDepth;
+    private final long maxTimeMillis;
+    private final long maxNodes;
+
+    public SearchLimits(int maxDepth, long maxTimeMillis, long maxNodes) {
+        this.maxDepth = Math.max(1, Math.min(maxDepth, Search.MAX_PLY - 1));
+        this.maxTimeMillis = maxTimeMillis;
+        this.maxNodes = maxNodes;
+    }
+
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits(maxDepth, UNLIMITED, UNLIMITED);
+    }
+
+    public static SearchLimits time(long maxTimeMillis) {
+        return new SearchLimits(Search.MAX_PLY - 1, maxTimeMillis, UNLIMITED);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getMaxTimeMillis() {
+        return maxTimeMillis;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+}
@@ -0,0 +1,73 @@
+package engine;
+
+import game.Move;
+
+public class SearchResult {
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedMillis;
+    private final int[] principalVariation;
+    private final int threads;
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, long elapsedMillis, int[] principalVariation) {
+        this(bestMove, score, depth, nodes, elapsedMillis, principalVariation, 1);
+    }
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, long elapsedMillis, int[] principalVariation,
+                        int threads) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedMillis = elapsedMillis;
+        this.principalVariation = principalVariation;
+        this.threads = threads;
+    }
+
+    // Move.NONE when the side to move has no legal move
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    // Centipawns from the point of view of the side to move; see Search.isMateScore
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getNodesPerSecond() {
+        return elapsedMillis == 0 ? nodes * 1000 : nodes * 1000 / elapsedMillis;
+    }
+
+    // Number of threads whose nodes are included in getNodes
+    public int getThreads() {
+        return threads;
+    }
+
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder pv = new StringBuilder();
+        for (int move : principalVariation) {
+            pv.append(' ').append(Move.toString(move));
+        }
+        return "depth " + depth + " score " + score + " nodes " + nodes + " nps " + getNodesPerSecond()
+                + " threads " + threads + " time " + elapsedMillis + " pv" + pv;
+    }
+}
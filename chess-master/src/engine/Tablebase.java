@@ -0,0 +1,290 @@
+package engine;
+
+import game.BitBoard;
+import game.Move;
+import game.MoveGenerator;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Endgame tables for positions with up to four pieces, written by analysis.TablebaseGenerator and read from
+// memory-mapped files. Each material set ("KQKR": white's pieces, then black's) has two files covering every
+// placement of its pieces with either side to move. The .wdl file holds 2 bits per position (draw, win, loss
+// or illegal, for the side to move) and the .dtm file one byte with the distance to mate in plies.
+// A position is indexed as side * 64^n + the squares of its n pieces in base 64, in the order of the name.
+// Only the side with more material is stored as white; other positions are probed with the colors swapped.
+// Castling, en passant and the fifty-move rule are not modelled, so positions with either right set are
+// not probed. Probes may come from several search threads at once.
+public class Tablebase {
+    public static final int MAX_PIECES = 4;
+
+    // Results of probeWdl for the side to move
+    public static final int WIN = 1;
+    public static final int DRAW = 0;
+    public static final int LOSS = -1;
+    // Returned by both probes for positions no table covers
+    public static final int UNKNOWN = -2;
+    // Returned by probeDtm for drawn positions
+    public static final int NO_MATE = -1;
+
+    // File contents
+    public static final int WDL_DRAW = 0;
+    public static final int WDL_WIN = 1;
+    public static final int WDL_LOSS = 2;
+    public static final int WDL_ILLEGAL = 3;
+    public static final int DTM_NONE = 0xFF;
+
+    private static final String PIECE_LETTERS = "PNBRQK";
+    // Order of the pieces after the king in a material name
+    private static final int[] NAME_ORDER = { BitBoard.QUEEN, BitBoard.ROOK, BitBoard.BISHOP, BitBoard.KNIGHT, BitBoard.PAWN };
+    // Material sets are looked up by the count (0 to 2) of each of the ten non-king pieces in base 3
+    private static final int MATERIAL_KEYS = 59049;
+
+    private static final Table MISSING = new Table(null, false, null, null);
+    private static final Table TRIVIAL = new Table(null, false, null, null);
+
+    private final Path directory;
+    private final Table[] tables = new Table[MATERIAL_KEYS];
+
+    public Tablebase(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // WIN, DRAW or LOSS for the side to move, or UNKNOWN
+    public int probeWdl(BitBoard bits) {
+        Table table = table(bits);
+        if (table == TRIVIAL) {
+            return DRAW;
+        }
+        if (table == MISSING) {
+            return UNKNOWN;
+        }
+        int index = table.index(bits);
+        int value = (table.wdl.get(index >>> 2) >>> ((index & 3) * 2)) & 3;
+        switch (value) {
+            case WDL_WIN: return WIN;
+            case WDL_LOSS: return LOSS;
+            case WDL_DRAW: return DRAW;
+            default: return UNKNOWN;
+        }
+    }
+
+    // Plies to mate with best play, odd when the side to move mates and even when it is mated, NO_MATE for
+    // a draw, or UNKNOWN
+    public int probeDtm(BitBoard bits) {
+        Table table = table(bits);
+        if (table == TRIVIAL) {
+            return NO_MATE;
+        }
+        if (table == MISSING) {
+            return UNKNOWN;
+        }
+        int index = table.index(bits);
+        if (((table.wdl.get(index >>> 2) >>> ((index & 3) * 2)) & 3) == WDL_ILLEGAL) {
+            return UNKNOWN;
+        }
+        int dtm = table.dtm.get(index) & 0xFF;
+        return dtm == DTM_NONE ? NO_MATE : dtm;
+    }
+
+    // The move reaching the quickest mate, or the slowest one when the position is lost, or a drawing move.
+    // Returns Move.NONE if the position or any position after a move is not covered
+    public int bestMove(BitBoard bits) {
+        if (probeDtm(bits) == UNKNOWN) {
+            return Move.NONE;
+        }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(bits, bits.sideToMove(), moves);
+        int best = Move.NONE;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            bits.make(moves[i]);
+            int dtm = probeDtm(bits);
+            bits.unmake();
+            if (dtm == UNKNOWN) {
+                return Move.NONE;
+            }
+            // Rank the moves by the result for the opponent: lost soonest, then drawn, then won latest
+            int rank = dtm == NO_MATE ? 0 : dtm % 2 == 0 ? 1000 - dtm : dtm - 1000;
+            if (rank > bestRank) {
+                best = moves[i];
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    private Table table(BitBoard bits) {
+        if (Long.bitCount(bits.allPieces()) > MAX_PIECES || bits.castlingRights() != 0
+                || bits.enPassantSquare() != BitBoard.NO_SQUARE) {
+            return MISSING;
+        }
+        int key = 0;
+        for (int code = 0; code < 12; code++) {
+            if (BitBoard.typeOf(code) == BitBoard.KING) {
+                if (Long.bitCount(bits.pieces(code)) != 1) {
+                    return MISSING;
+                }
+                continue;
+            }
+            int count = Long.bitCount(bits.pieces(code));
+            if (count > 2) {
+                return MISSING;
+            }
+            key = key * 3 + count;
+        }
+        Table table = tables[key];
+        return table != null ? table : load(key, bits);
+    }
+
+    private synchronized Table load(int key, BitBoard bits) {
+        if (tables[key] != null) {
+            return tables[key];
+        }
+        String material = materialName(bits, BitBoard.WHITE) + materialName(bits, BitBoard.BLACK);
+        String name = canonical(material);
+        Table table = isTrivialDraw(name) ? TRIVIAL : open(name, !name.equals(material));
+        tables[key] = table;
+        return table;
+    }
+
+    private Table open(String name, boolean mirrored) {
+        Path wdlPath = directory.resolve(name + ".wdl");
+        Path dtmPath = directory.resolve(name + ".dtm");
+        if (!Files.isRegularFile(wdlPath) || !Files.isRegularFile(dtmPath)) {
+            return MISSING;
+        }
+        int positions = positionCount(name);
+        try (FileChannel wdlChannel = FileChannel.open(wdlPath, StandardOpenOption.READ);
+             FileChannel dtmChannel = FileChannel.open(dtmPath, StandardOpenOption.READ)) {
+            if (wdlChannel.size() != positions / 4 || dtmChannel.size() != positions) {
+                System.err.println("Ignoring tablebase " + name + ": unexpected file size");
+                return MISSING;
+            }
+            // A mapping stays valid after its channel is closed
+            MappedByteBuffer wdl = wdlChannel.map(FileChannel.MapMode.READ_ONLY, 0, wdlChannel.size());
+            MappedByteBuffer dtm = dtmChannel.map(FileChannel.MapMode.READ_ONLY, 0, dtmChannel.size());
+            return new Table(pieceCodes(name), mirrored, wdl, dtm);
+        } catch (IOException e) {
+            System.err.println("Error opening tablebase " + name + ": " + e.getMessage());
+            return MISSING;
+        }
+    }
+
+    // "K" followed by the other pieces of one color, strongest first
+    private static String materialName(BitBoard bits, int color) {
+        StringBuilder name = new StringBuilder("K");
+        for (int type : NAME_ORDER) {
+            for (int i = Long.bitCount(bits.pieces(color, type)); i > 0; i--) {
+                name.append(PIECE_LETTERS.charAt(type));
+            }
+        }
+        return name.toString();
+    }
+
+    // Name of the stored table for a material set such as "KRKQ" (here "KQKR"): the side with more
+    // material comes first. Throws IllegalArgumentException if the name is not a material set of at most four pieces
+    public static String canonical(String material) {
+        int split = material.indexOf('K', 1);
+        if (material.length() < 2 || material.length() > MAX_PIECES || material.charAt(0) != 'K' || split < 0) {
+            throw new IllegalArgumentException("Invalid material: " + material);
+        }
+        String white = sorted(material.substring(0, split), material);
+        String black = sorted(material.substring(split), material);
+        int whiteValue = value(white);
+        int blackValue = value(black);
+        boolean swap = blackValue > whiteValue || (blackValue == whiteValue && black.compareTo(white) > 0);
+        return swap ? black + white : white + black;
+    }
+
+    private static String sorted(String side, String material) {
+        StringBuilder name = new StringBuilder("K");
+        for (int type : NAME_ORDER) {
+            for (int i = 1; i < side.length(); i++) {
+                int letter = PIECE_LETTERS.indexOf(side.charAt(i));
+                if (letter < 0 || letter == BitBoard.KING) {
+                    throw new IllegalArgumentException("Invalid material: " + material);
+                }
+                if (letter == type) {
+                    name.append(side.charAt(i));
+                }
+            }
+        }
+        return name.toString();
+    }
+
+    private static int value(String side) {
+        int value = 0;
+        for (int i = 1; i < side.length(); i++) {
+            value += BitBoard.PIECE_VALUES[PIECE_LETTERS.indexOf(side.charAt(i))];
+        }
+        return value;
+    }
+
+    // Material that cannot mate: bare kings or a single minor piece
+    public static boolean isTrivialDraw(String name) {
+        String pieces = name.replace("K", "");
+        return pieces.isEmpty() || pieces.equals("B") || pieces.equals("N");
+    }
+
+    // Piece code of each index slot, white's pieces first, in the order of the name
+    public static int[] pieceCodes(String name) {
+        int split = name.indexOf('K', 1);
+        int[] codes = new int[name.length()];
+        for (int i = 0; i < name.length(); i++) {
+            codes[i] = BitBoard.code(i < split ? BitBoard.WHITE : BitBoard.BLACK, PIECE_LETTERS.indexOf(name.charAt(i)));
+        }
+        return codes;
+    }
+
+    // Positions in a table: either side to move times every placement of the pieces
+    public static int positionCount(String name) {
+        return 2 << (6 * name.length());
+    }
+
+    private static final class Table {
+        // Codes of the pieces on the board for each slot, which are the table's codes with the colors
+        // swapped when the board is probed mirrored
+        final int[] boardCodes;
+        final boolean mirrored;
+        final MappedByteBuffer wdl;
+        final MappedByteBuffer dtm;
+
+        Table(int[] codes, boolean mirrored, MappedByteBuffer wdl, MappedByteBuffer dtm) {
+            this.mirrored = mirrored;
+            this.wdl = wdl;
+            this.dtm = dtm;
+            if (codes == null) {
+                this.boardCodes = null;
+                return;
+            }
+            this.boardCodes = new int[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                int color = BitBoard.colorOf(codes[i]);
+                boardCodes[i] = BitBoard.code(mirrored ? 1 - color : color, BitBoard.typeOf(codes[i]));
+            }
+        }
+
+        // Mirroring swaps the colors and flips the board vertically, so pawns still run the same way
+        int index(BitBoard bits) {
+            int flip = mirrored ? 56 : 0;
+            int index = mirrored ? 1 - bits.sideToMove() : bits.sideToMove();
+            long used = 0;
+            for (int code : boardCodes) {
+                long remaining = bits.pieces(code) & ~used;
+                int square = Long.numberOfTrailingZeros(remaining);
+                used |= 1L << square;
+                index = index * 64 + (square ^ flip);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package engine;
+
+import game.Move;
+
+import java.util.Arrays;
+
+// Fixed-size hash table of search results shared by every search thread.
+// Each entry is two longs in one flat array: (key ^ data, data). A reader only accepts an entry when
+// the two halves XOR back to its key, so an entry torn by a concurrent writer is treated as a miss
+// and no locking is needed.
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    public static final long MISS = 0L;
+
+    private static final int BYTES_PER_ENTRY = 16;
+
+    // data layout: move (20 bits) | score + 32768 (16 bits) | depth (8 bits) | bound (2 bits) | generation (8 bits)
+    private static final int SCORE_SHIFT = 20;
+    private static final int DEPTH_SHIFT = 36;
+    private static final int BOUND_SHIFT = 44;
+    private static final int GENERATION_SHIFT = 46;
+
+    private final long[] table;
+    private final int mask;
+    private volatile int generation;
+
+    public TranspositionTable(int sizeMb) {
+        long bytes = Math.max(1, sizeMb) * 1024L * 1024L;
+        // Largest power of two number of entries that fits the budget, capped by the maximum array size
+        long entries = Long.highestOneBit(Math.min(bytes / BYTES_PER_ENTRY, 1L << 29));
+        this.table = new long[(int) entries * 2];
+        this.mask = (int) entries - 1;
+    }
+
+    public int getSizeMb() {
+        return (int) ((long) table.length * 8 / (1024 * 1024));
+    }
+
+    // Called at the start of every search so entries from older searches are replaced first
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation = 0;
+    }
+
+    // Returns the packed entry for the key, or MISS
+    public long probe(long key) {
+        int index = ((int) key & mask) << 1;
+        long data = table[index + 1];
+        long check = table[index];
+        if (data != 0 && (check ^ data) == key) {
+            return data;
+        }
+        return MISS;
+    }
+
+    // Depth-preferred replacement: an entry is kept unless it is for the same position,
+    // from an older search, or searched less deeply than the new result
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = ((int) key & mask) << 1;
+        long oldData = table[index + 1];
+        boolean samePosition = (table[index] ^ oldData) == key;
+        if (oldData != 0 && !samePosition && generation(oldData) == generation && depth(oldData) > depth) {
+            return;
+        }
+        if (samePosition && move == Move.NONE) {
+            move = move(oldData); // Keep the best move we already knew about
+        }
+        long data = (move & 0xFFFFFL)
+                | ((long) (score + 32768) << SCORE_SHIFT)
+                | ((long) Math.max(0, Math.min(depth, 255)) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+        table[index + 1] = data;
+        table[index] = key ^ data;
+    }
+
+    // Approximate fill rate in permille, sampled from the first thousand entries
+    public int hashfull() {
+        int used = 0;
+        int sample = Math.min(1000, table.length / 2);
+        for (int i = 0; i < sample; i++) {
+            long data = table[i * 2 + 1];
+            if (data != 0 && generation(data) == generation) {
+                used++;
+            }
+        }
+        return sample == 0 ? 0 : used * 1000 / sample;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFFF);
+    }
+
+    public static int score(long data) {
+        return (int) ((data >>> SCORE_SHIFT) & 0xFFFF) - 32768;
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> BOUND_SHIFT) & 0x3);
+    }
+
+    private static int generation(long data) {
+        return (int) ((data >>> GENERATION_SHIFT) & 0xFF);
+    }
+}
@@ -0,0 +1,220 @@
+package game;
+
+public final class Attacks {
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+    private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { -1, -1 }, { 1, -1 }, { -1, 1 } };
+
+    private static final long[] ROOK_MASK = new long[64];
+    private static final long[] ROOK_MAGIC = new long[64];
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final long[] BISHOP_MAGIC = new long[64];
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    // Fixed seed so the magic numbers, and therefore the tables, are identical on every start
+    private static long seed = 0x2545F4914F6CDD1DL;
+
+    static {
+        initLeaperTables();
+        initLineTables();
+        for (int square = 0; square < 64; square++) {
+            initMagic(square, ROOK_DIRECTIONS, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_TABLE);
+            initMagic(square, BISHOP_DIRECTIONS, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_TABLE);
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING[square];
+    }
+
+    public static long pawnAttacks(int color, int square) {
+        return PAWN[color][square];
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_TABLE[square][(int) (((occupied & ROOK_MASK[square]) * ROOK_MAGIC[square]) >>> ROOK_SHIFT[square])];
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_TABLE[square][(int) (((occupied & BISHOP_MASK[square]) * BISHOP_MAGIC[square]) >>> BISHOP_SHIFT[square])];
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    public static long attacks(int type, int color, int square, long occupied) {
+        switch (type) {
+            case BitBoard.PAWN: return PAWN[color][square];
+            case BitBoard.KNIGHT: return KNIGHT[square];
+            case BitBoard.BISHOP: return bishopAttacks(square, occupied);
+            case BitBoard.ROOK: return rookAttacks(square, occupied);
+            case BitBoard.QUEEN: return queenAttacks(square, occupied);
+            default: return KING[square];
+        }
+    }
+
+    // Squares strictly between two squares on the same rank, file or diagonal, otherwise empty
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    // The full rank, file or diagonal through both squares, otherwise empty
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    private static void initLeaperTables() {
+        int[][] knightSteps = { { 2, 1 }, { 2, -1 }, { -2, 1 }, { -2, -1 }, { 1, 2 }, { -1, 2 }, { 1, -2 }, { -1, -2 } };
+        int[][] kingSteps = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, { 1, 1 }, { -1, -1 }, { 1, -1 }, { -1, 1 } };
+        for (int square = 0; square < 64; square++) {
+            int row = BitBoard.row(square);
+            int col = BitBoard.column(square);
+            KNIGHT[square] = steps(row, col, knightSteps);
+            KING[square] = steps(row, col, kingSteps);
+            // White pawns move towards row 0, black pawns towards row 7
+            PAWN[BitBoard.WHITE][square] = steps(row, col, new int[][] { { -1, -1 }, { -1, 1 } });
+            PAWN[BitBoard.BLACK][square] = steps(row, col, new int[][] { { 1, -1 }, { 1, 1 } });
+        }
+    }
+
+    private static long steps(int row, int col, int[][] steps) {
+        long result = 0L;
+        for (int[] step : steps) {
+            int r = row + step[0];
+            int c = col + step[1];
+            if (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                result |= 1L << BitBoard.square(r, c);
+            }
+        }
+        return result;
+    }
+
+    private static void initLineTables() {
+        int[][] directions = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, { 1, 1 }, { -1, -1 }, { 1, -1 }, { -1, 1 } };
+        for (int from = 0; from < 64; from++) {
+            for (int[] d : directions) {
+                long ray = slide(from, d, 0L);
+                long backRay = slide(from, new int[] { -d[0], -d[1] }, 0L);
+                long path = 0L;
+                int r = BitBoard.row(from) + d[0];
+                int c = BitBoard.column(from) + d[1];
+                while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                    int to = BitBoard.square(r, c);
+                    BETWEEN[from][to] = path;
+                    LINE[from][to] = ray | backRay | (1L << from);
+                    path |= 1L << to;
+                    r += d[0];
+                    c += d[1];
+                }
+            }
+        }
+    }
+
+    private static long slide(int square, int[] direction, long occupied) {
+        long result = 0L;
+        int r = BitBoard.row(square) + direction[0];
+        int c = BitBoard.column(square) + direction[1];
+        while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+            long bit = 1L << BitBoard.square(r, c);
+            result |= bit;
+            if ((occupied & bit) != 0) {
+                break;
+            }
+            r += direction[0];
+            c += direction[1];
+        }
+        return result;
+    }
+
+    private static long slide(int square, int[][] directions, long occupied) {
+        long result = 0L;
+        for (int[] d : directions) {
+            result |= slide(square, d, occupied);
+        }
+        return result;
+    }
+
+    // Relevant blockers exclude the board edge in each direction, since a piece there never shortens the ray
+    private static long relevantMask(int square, int[][] directions) {
+        long mask = 0L;
+        for (int[] d : directions) {
+            int r = BitBoard.row(square) + d[0];
+            int c = BitBoard.column(square) + d[1];
+            while (r + d[0] >= 0 && r + d[0] < 8 && c + d[1] >= 0 && c + d[1] < 8) {
+                mask |= 1L << BitBoard.square(r, c);
+                r += d[0];
+                c += d[1];
+            }
+        }
+        return mask;
+    }
+
+    private static void initMagic(int square, int[][] directions, long[] masks, long[] magics, int[] shifts, long[][] tables) {
+        long mask = relevantMask(square, directions);
+        int bits = Long.bitCount(mask);
+        int size = 1 << bits;
+        long[] occupancies = new long[size];
+        long[] references = new long[size];
+
+        // Carry-Rippler enumeration of every subset of the mask
+        long subset = 0L;
+        for (int i = 0; i < size; i++) {
+            occupancies[i] = subset;
+            references[i] = slide(square, directions, subset);
+            subset = (subset - mask) & mask;
+        }
+
+        long[] table = new long[size];
+        int[] epoch = new int[size];
+        int attempt = 0;
+        while (true) {
+            long magic = nextRandom() & nextRandom() & nextRandom();
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+                continue;
+            }
+            attempt++;
+            boolean collision = false;
+            for (int i = 0; i < size && !collision; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> (64 - bits));
+                if (epoch[index] < attempt) {
+                    epoch[index] = attempt;
+                    table[index] = references[i];
+                } else if (table[index] != references[i]) {
+                    collision = true;
+                }
+            }
+            if (!collision) {
+                masks[square] = mask;
+                magics[square] = magic;
+                shifts[square] = 64 - bits;
+                tables[square] = table;
+                return;
+            }
+        }
+    }
+
+    private static long nextRandom() {
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 0x2545F4914F6CDD1DL;
+    }
+}
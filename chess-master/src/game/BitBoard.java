@@ -0,0 +1,666 @@
+package game;
+
+import pieces.*;
+import utils.PieceColor;
+import utils.Position;
+
+import java.util.Arrays;
+
+public class BitBoard {
+    // Square index = row * 8 + column, so square 0 is the top-left corner (row 0, column 0)
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int EMPTY = -1;
+    public static final int NO_SQUARE = -1;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    // Largest halfmove clock the packed undo state can hold
+    public static final int MAX_HALFMOVE_CLOCK = (1 << 17) - 1;
+
+    // Piece values for exchange arithmetic; the king outweighs any exchange so it is never given up
+    public static final int[] PIECE_VALUES = { 100, 320, 330, 500, 900, 20000 };
+
+    // Squares of the same color as a8, which is a light square
+    private static final long LIGHT_SQUARES = 0xAA55AA55AA55AA55L;
+
+    // Rights kept when a move starts or ends on a square: touching a king or rook home square clears them
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, ALL_CASTLING);
+        CASTLING_MASK[square(7, 4)] = ALL_CASTLING & ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[square(7, 7)] = ALL_CASTLING & ~WHITE_KINGSIDE;
+        CASTLING_MASK[square(7, 0)] = ALL_CASTLING & ~WHITE_QUEENSIDE;
+        CASTLING_MASK[square(0, 4)] = ALL_CASTLING & ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[square(0, 7)] = ALL_CASTLING & ~BLACK_KINGSIDE;
+        CASTLING_MASK[square(0, 0)] = ALL_CASTLING & ~BLACK_QUEENSIDE;
+    }
+
+    private final long[] pieces = new long[12];
+    private final long[] occupancy = new long[2];
+    private long allPieces;
+    private final byte[] squares = new byte[64];
+    private final int[] kingSquare = { NO_SQUARE, NO_SQUARE };
+    // Squares attacked by each side, rebuilt lazily after the board changes
+    private final long[] attackMap = new long[2];
+    private boolean attackMapValid;
+    private int castlingRights;
+    private int enPassantSquare = NO_SQUARE;
+    private int sideToMove = WHITE;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    private long key;
+    // Zobrist key of the pawns alone, for caching pawn-structure terms
+    private long pawnKey;
+    // Material and piece-square totals from white's point of view, kept up to date by put and remove
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
+
+    // Undo stack, one entry per move made: the move itself and the packed state it destroyed
+    private int[] undoMoves = new int[256];
+    private int[] undoStates = new int[256];
+    private long[] undoKeys = new long[256];
+    private int ply;
+
+    // Scratch space for the swap list of see, one entry per capture in the sequence
+    private final int[] exchangeGains = new int[33];
+
+    public BitBoard() {
+        Arrays.fill(squares, (byte) EMPTY);
+    }
+
+    public BitBoard(BitBoard other) {
+        copyFrom(other);
+    }
+
+    // Makes this board an independent copy of the other, reusing its arrays where they are large enough
+    public void copyFrom(BitBoard other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.occupancy, 0, occupancy, 0, occupancy.length);
+        System.arraycopy(other.squares, 0, squares, 0, squares.length);
+        System.arraycopy(other.kingSquare, 0, kingSquare, 0, kingSquare.length);
+        allPieces = other.allPieces;
+        attackMapValid = false;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        sideToMove = other.sideToMove;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        if (undoMoves.length < other.undoMoves.length) {
+            undoMoves = new int[other.undoMoves.length];
+            undoStates = new int[other.undoMoves.length];
+            undoKeys = new long[other.undoMoves.length];
+        }
+        System.arraycopy(other.undoMoves, 0, undoMoves, 0, other.ply);
+        System.arraycopy(other.undoStates, 0, undoStates, 0, other.ply);
+        System.arraycopy(other.undoKeys, 0, undoKeys, 0, other.ply);
+        key = other.key;
+        pawnKey = other.pawnKey;
+        middlegameScore = other.middlegameScore;
+        endgameScore = other.endgameScore;
+        phase = other.phase;
+        ply = other.ply;
+    }
+
+    public static int square(int row, int column) {
+        return (row << 3) | column;
+    }
+
+    public static int row(int square) {
+        return square >>> 3;
+    }
+
+    public static int column(int square) {
+        return square & 7;
+    }
+
+    public static int code(int color, int type) {
+        return color * 6 + type;
+    }
+
+    public static int colorOf(int code) {
+        return code >= 6 ? BLACK : WHITE;
+    }
+
+    public static int typeOf(int code) {
+        return code >= 6 ? code - 6 : code;
+    }
+
+    public static int color(PieceColor color) {
+        return color == PieceColor.WHITE ? WHITE : BLACK;
+    }
+
+    public static PieceColor pieceColor(int color) {
+        return color == WHITE ? PieceColor.WHITE : PieceColor.BLACK;
+    }
+
+    public static int codeOf(Piece piece) {
+        int type;
+        if (piece instanceof Pawn) type = PAWN;
+        else if (piece instanceof Knight) type = KNIGHT;
+        else if (piece instanceof Bishop) type = BISHOP;
+        else if (piece instanceof Rook) type = ROOK;
+        else if (piece instanceof Queen) type = QUEEN;
+        else type = KING;
+        return code(color(piece.getColor()), type);
+    }
+
+    public static Piece createPiece(int code, int row, int column) {
+        PieceColor color = pieceColor(colorOf(code));
+        Position position = new Position(row, column);
+        switch (typeOf(code)) {
+            case PAWN: return new Pawn(color, position);
+            case KNIGHT: return new Knight(color, position);
+            case BISHOP: return new Bishop(color, position);
+            case ROOK: return new Rook(color, position);
+            case QUEEN: return new Queen(color, position);
+            default: return new King(color, position);
+        }
+    }
+
+    public int pieceAt(int square) {
+        return squares[square];
+    }
+
+    public long pieces(int color, int type) {
+        return pieces[color * 6 + type];
+    }
+
+    public long pieces(int code) {
+        return pieces[code];
+    }
+
+    public long occupancy(int color) {
+        return occupancy[color];
+    }
+
+    public long allPieces() {
+        return allPieces;
+    }
+
+    public int kingSquare(int color) {
+        return kingSquare[color];
+    }
+
+    public int castlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        key ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+    }
+
+    public static int castlingRightsAfter(int castlingRights, int from, int to) {
+        return castlingRights & CASTLING_MASK[from] & CASTLING_MASK[to];
+    }
+
+    // Square a pawn that just advanced two squares passed over, or NO_SQUARE
+    public int enPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        key ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(enPassantSquare);
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int sideToMove) {
+        if (sideToMove != this.sideToMove) {
+            key ^= Zobrist.side();
+        }
+        this.sideToMove = sideToMove;
+    }
+
+    // Half moves since the last capture or pawn move, for the fifty-move rule
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    // Zobrist key of the position, kept up to date by every change to the board or state
+    public long key() {
+        return key;
+    }
+
+    // Recomputes the key from scratch, for verification and after bulk edits
+    public long computeKey() {
+        long result = Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        if (sideToMove == BLACK) {
+            result ^= Zobrist.side();
+        }
+        for (int square = 0; square < 64; square++) {
+            if (squares[square] != EMPTY) {
+                result ^= Zobrist.piece(squares[square], square);
+            }
+        }
+        return result;
+    }
+
+    public long pawnKey() {
+        return pawnKey;
+    }
+
+    public long computePawnKey() {
+        long result = 0L;
+        for (int square = 0; square < 64; square++) {
+            if (squares[square] != EMPTY && typeOf(squares[square]) == PAWN) {
+                result ^= Zobrist.piece(squares[square], square);
+            }
+        }
+        return result;
+    }
+
+    public int middlegameScore() {
+        return middlegameScore;
+    }
+
+    public int endgameScore() {
+        return endgameScore;
+    }
+
+    // Sum of the phase weights of the pieces on the board, PieceSquareTables.MAX_PHASE at the start
+    public int phase() {
+        return phase;
+    }
+
+    // Tapered material and piece-square score from white's point of view
+    public int materialScore() {
+        return PieceSquareTables.taper(middlegameScore, endgameScore, phase);
+    }
+
+    // Number of moves on the undo stack
+    public int ply() {
+        return ply;
+    }
+
+    public int lastMove() {
+        return ply == 0 ? Move.NONE : undoMoves[ply - 1];
+    }
+
+    // Earlier occurrences of the position on the undo stack. Only the keys since the last capture or pawn
+    // move can match, and only every other one has the same side to move, so this looks at no more than
+    // halfmoveClock / 2 entries
+    public int repetitions() {
+        int count = 0;
+        int earliest = Math.max(0, ply - halfmoveClock);
+        for (int i = ply - 4; i >= earliest; i -= 2) {
+            if (undoKeys[i] == key) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean isRepetition() {
+        return repetitions() > 0;
+    }
+
+    // Neither side can mate: bare kings, a single minor piece, or only bishops that all stand on squares
+    // of one color
+    public boolean hasInsufficientMaterial() {
+        long heavy = pieces[code(WHITE, PAWN)] | pieces[code(BLACK, PAWN)] | pieces[code(WHITE, ROOK)]
+                | pieces[code(BLACK, ROOK)] | pieces[code(WHITE, QUEEN)] | pieces[code(BLACK, QUEEN)];
+        if (heavy != 0) {
+            return false;
+        }
+        long knights = pieces[code(WHITE, KNIGHT)] | pieces[code(BLACK, KNIGHT)];
+        long bishops = pieces[code(WHITE, BISHOP)] | pieces[code(BLACK, BISHOP)];
+        if (Long.bitCount(knights | bishops) <= 1) {
+            return true;
+        }
+        return knights == 0 && ((bishops & LIGHT_SQUARES) == 0 || (bishops & ~LIGHT_SQUARES) == 0);
+    }
+
+    // Plays a move produced by MoveGenerator for the side to move; legality is not checked again
+    public void make(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int code = squares[from];
+        int color = colorOf(code);
+
+        if (ply == undoMoves.length) {
+            undoMoves = Arrays.copyOf(undoMoves, ply * 2);
+            undoStates = Arrays.copyOf(undoStates, ply * 2);
+            undoKeys = Arrays.copyOf(undoKeys, ply * 2);
+        }
+
+        undoKeys[ply] = key;
+        int captured = EMPTY;
+        if (Move.isEnPassant(move)) {
+            captured = remove(square(row(from), column(to)));
+        } else if (Move.isCapture(move)) {
+            captured = remove(to);
+        }
+        undoMoves[ply] = move;
+        undoStates[ply] = packState(captured, castlingRights, enPassantSquare, halfmoveClock);
+        ply++;
+
+        remove(from);
+        put(to, Move.isPromotion(move) ? code(color, Move.promotionType(move)) : code);
+        if (Move.isCastling(move)) {
+            boolean kingSide = to > from;
+            move(square(row(from), kingSide ? 7 : 0), square(row(from), kingSide ? 5 : 3));
+        }
+
+        setCastlingRights(castlingRightsAfter(castlingRights, from, to));
+        // Only record the en-passant square when a capture is possible, so equal positions get equal keys
+        int passed = (from + to) / 2;
+        boolean capturable = Move.isDoublePush(move)
+                && (Attacks.pawnAttacks(color, passed) & pieces[code(1 - color, PAWN)]) != 0;
+        setEnPassantSquare(capturable ? passed : NO_SQUARE);
+        halfmoveClock = (typeOf(code) == PAWN || captured != EMPTY) ? 0 : Math.min(halfmoveClock + 1, MAX_HALFMOVE_CLOCK);
+        if (color == BLACK) {
+            fullmoveNumber++;
+        }
+        setSideToMove(1 - color);
+    }
+
+    public void unmake() {
+        if (ply == 0) {
+            return;
+        }
+        ply--;
+        int move = undoMoves[ply];
+        int state = undoStates[ply];
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int color = 1 - sideToMove;
+
+        int code = remove(to);
+        put(from, Move.isPromotion(move) ? code(color, PAWN) : code);
+        if (Move.isCastling(move)) {
+            boolean kingSide = to > from;
+            move(square(row(from), kingSide ? 5 : 3), square(row(from), kingSide ? 7 : 0));
+        }
+
+        int captured = (state & 0xF) - 1;
+        if (captured != EMPTY) {
+            put(Move.isEnPassant(move) ? square(row(from), column(to)) : to, captured);
+        }
+
+        castlingRights = (state >>> 4) & 0xF;
+        enPassantSquare = ((state >>> 8) & 0x7F) - 1;
+        halfmoveClock = state >>> 15;
+        if (color == BLACK) {
+            fullmoveNumber--;
+        }
+        sideToMove = color;
+        key = undoKeys[ply];
+    }
+
+    // captured piece + 1 (4 bits), castling rights (4 bits), en-passant square + 1 (7 bits), halfmove clock
+    private static int packState(int captured, int castlingRights, int enPassantSquare, int halfmoveClock) {
+        return (captured + 1) | (castlingRights << 4) | ((enPassantSquare + 1) << 8) | (halfmoveClock << 15);
+    }
+
+    public void put(int square, int code) {
+        if (squares[square] != EMPTY) {
+            remove(square);
+        }
+        long bit = 1L << square;
+        pieces[code] |= bit;
+        occupancy[colorOf(code)] |= bit;
+        allPieces |= bit;
+        squares[square] = (byte) code;
+        key ^= Zobrist.piece(code, square);
+        if (typeOf(code) == PAWN) {
+            pawnKey ^= Zobrist.piece(code, square);
+        }
+        middlegameScore += PieceSquareTables.middlegame(code, square);
+        endgameScore += PieceSquareTables.endgame(code, square);
+        phase += PieceSquareTables.phase(code);
+        if (typeOf(code) == KING) {
+            kingSquare[colorOf(code)] = square;
+        }
+        attackMapValid = false;
+    }
+
+    public int remove(int square) {
+        int code = squares[square];
+        if (code == EMPTY) {
+            return EMPTY;
+        }
+        long mask = ~(1L << square);
+        pieces[code] &= mask;
+        occupancy[colorOf(code)] &= mask;
+        allPieces &= mask;
+        squares[square] = (byte) EMPTY;
+        key ^= Zobrist.piece(code, square);
+        if (typeOf(code) == PAWN) {
+            pawnKey ^= Zobrist.piece(code, square);
+        }
+        middlegameScore -= PieceSquareTables.middlegame(code, square);
+        endgameScore -= PieceSquareTables.endgame(code, square);
+        phase -= PieceSquareTables.phase(code);
+        if (typeOf(code) == KING && kingSquare[colorOf(code)] == square) {
+            long kings = pieces[code];
+            kingSquare[colorOf(code)] = kings == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(kings);
+        }
+        attackMapValid = false;
+        return code;
+    }
+
+    public void move(int from, int to) {
+        int code = remove(from);
+        if (code != EMPTY) {
+            put(to, code);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(pieces, 0L);
+        occupancy[WHITE] = 0L;
+        occupancy[BLACK] = 0L;
+        allPieces = 0L;
+        Arrays.fill(squares, (byte) EMPTY);
+        kingSquare[WHITE] = NO_SQUARE;
+        kingSquare[BLACK] = NO_SQUARE;
+        attackMapValid = false;
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+        sideToMove = WHITE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        ply = 0;
+        key = 0L;
+        pawnKey = 0L;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+    }
+
+    public long attackersTo(int square, int byColor, long occupied) {
+        long rookLike = pieces[code(byColor, ROOK)] | pieces[code(byColor, QUEEN)];
+        long bishopLike = pieces[code(byColor, BISHOP)] | pieces[code(byColor, QUEEN)];
+        return (Attacks.pawnAttacks(1 - byColor, square) & pieces[code(byColor, PAWN)])
+                | (Attacks.knightAttacks(square) & pieces[code(byColor, KNIGHT)])
+                | (Attacks.kingAttacks(square) & pieces[code(byColor, KING)])
+                | (Attacks.rookAttacks(square, occupied) & rookLike)
+                | (Attacks.bishopAttacks(square, occupied) & bishopLike);
+    }
+
+    public boolean isAttacked(int square, int byColor) {
+        return attackersTo(square, byColor, allPieces) != 0;
+    }
+
+    // Enemy pieces giving check to the king of the given color
+    public long checkers(int color) {
+        int king = kingSquare[color];
+        return king == NO_SQUARE ? 0L : attackersTo(king, 1 - color, allPieces);
+    }
+
+    public boolean isInCheck(int color) {
+        return checkers(color) != 0;
+    }
+
+    // Pieces of the given color that are the only blocker between their king and an enemy slider
+    public long pinned(int color) {
+        int king = kingSquare[color];
+        if (king == NO_SQUARE) {
+            return 0L;
+        }
+        int enemy = 1 - color;
+        long enemyOccupancy = occupancy[enemy];
+        long snipers = (Attacks.rookAttacks(king, enemyOccupancy) & (pieces[code(enemy, ROOK)] | pieces[code(enemy, QUEEN)]))
+                | (Attacks.bishopAttacks(king, enemyOccupancy) & (pieces[code(enemy, BISHOP)] | pieces[code(enemy, QUEEN)]));
+        long result = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.between(king, sniper) & allPieces;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                result |= blockers & occupancy[color];
+            }
+        }
+        return result;
+    }
+
+    // Every square attacked by the given side, with the enemy king treated as transparent
+    // so that squares behind it along a checking ray count as attacked
+    public long attackedSquares(int byColor) {
+        if (!attackMapValid) {
+            attackMap[WHITE] = computeAttackedSquares(WHITE);
+            attackMap[BLACK] = computeAttackedSquares(BLACK);
+            attackMapValid = true;
+        }
+        return attackMap[byColor];
+    }
+
+    private long computeAttackedSquares(int byColor) {
+        long occupied = allPieces & ~pieces[code(1 - byColor, KING)];
+        long result = 0L;
+        for (int type = PAWN; type <= KING; type++) {
+            long bb = pieces[code(byColor, type)];
+            while (bb != 0) {
+                int square = Long.numberOfTrailingZeros(bb);
+                bb &= bb - 1;
+                result |= Attacks.attacks(type, byColor, square, occupied);
+            }
+        }
+        return result;
+    }
+
+    // Static exchange evaluation of a capture or promotion: the material the moving side nets on the target
+    // square when both sides keep recapturing with their least valuable piece and may stop whenever that
+    // is better for them. Sliders behind a piece that captures join in (x-rays). Nothing is moved on the board
+    public int see(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int color = colorOf(squares[from]);
+        long occupied = allPieces & ~(1L << from);
+        int gain;
+        if (Move.isEnPassant(move)) {
+            occupied &= ~(1L << square(row(from), column(to)));
+            gain = PIECE_VALUES[PAWN];
+        } else {
+            gain = squares[to] == EMPTY ? 0 : PIECE_VALUES[typeOf(squares[to])];
+        }
+        int onSquare = typeOf(squares[from]);
+        if (Move.isPromotion(move)) {
+            onSquare = Move.promotionType(move);
+            gain += PIECE_VALUES[onSquare] - PIECE_VALUES[PAWN];
+        }
+        return exchange(to, color, occupied, gain, onSquare);
+    }
+
+    // Pieces of the given color, other than the king, that the opponent wins material by capturing
+    public long hangingPieces(int color) {
+        int enemy = 1 - color;
+        long result = 0L;
+        long targets = occupancy[color] & ~pieces[code(color, KING)];
+        while (targets != 0) {
+            int square = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            long attackers = attackersTo(square, enemy, allPieces);
+            if (attackers == 0) {
+                continue;
+            }
+            int attacker = leastValuableAttacker(attackers, enemy);
+            long occupied = allPieces & ~(1L << attacker);
+            if (exchange(square, enemy, occupied, PIECE_VALUES[typeOf(squares[square])], typeOf(squares[attacker])) > 0) {
+                result |= 1L << square;
+            }
+        }
+        return result;
+    }
+
+    // Swap-list evaluation after the side of the given color has captured on the square for the given gain,
+    // leaving a piece of type onSquare there and occupied as the remaining board
+    private int exchange(int square, int color, long occupied, int gain, int onSquare) {
+        long bishopLike = pieces[code(WHITE, BISHOP)] | pieces[code(BLACK, BISHOP)]
+                | pieces[code(WHITE, QUEEN)] | pieces[code(BLACK, QUEEN)];
+        long rookLike = pieces[code(WHITE, ROOK)] | pieces[code(BLACK, ROOK)]
+                | pieces[code(WHITE, QUEEN)] | pieces[code(BLACK, QUEEN)];
+        long attackers = (attackersTo(square, WHITE, occupied) | attackersTo(square, BLACK, occupied)) & occupied;
+
+        int[] gains = exchangeGains;
+        int depth = 0;
+        gains[0] = gain;
+        int side = color;
+        while (true) {
+            depth++;
+            side = 1 - side;
+            // What this side would net by capturing the piece on the square, before knowing whether it can
+            gains[depth] = PIECE_VALUES[onSquare] - gains[depth - 1];
+            if (Math.max(-gains[depth - 1], gains[depth]) < 0) {
+                break; // Neither continuing nor stopping helps this side, so the sequence ends here
+            }
+            long own = attackers & occupancy[side];
+            if (own == 0) {
+                break;
+            }
+            int from = leastValuableAttacker(own, side);
+            onSquare = typeOf(squares[from]);
+            occupied &= ~(1L << from);
+            attackers |= (Attacks.bishopAttacks(square, occupied) & bishopLike)
+                    | (Attacks.rookAttacks(square, occupied) & rookLike);
+            attackers &= occupied;
+        }
+        // The last entry is a capture that never happened; fold the rest back, each side recapturing
+        // only when that is better for it than stopping
+        while (--depth > 0) {
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+        }
+        return gains[0];
+    }
+
+    private int leastValuableAttacker(long attackers, int color) {
+        for (int type = PAWN; type <= KING; type++) {
+            long matching = attackers & pieces[code(color, type)];
+            if (matching != 0) {
+                return Long.numberOfTrailingZeros(matching);
+            }
+        }
+        return NO_SQUARE;
+    }
+}
@@ -1,69 +1,88 @@
 package game;
 
 import pieces.*;
-import utils.PieceColor;
 import utils.Position;
 
 public class ChessBoard {
+    // The bitboards are the source of truth; the Piece objects are only a view kept for the UI and Piece.isValidMove.
+    // The view is allocated on first use, so a board that is only played through its bitboards never builds it
+    private final BitBoard bits;
     private Piece[][] board;
 
     public ChessBoard() {
-        this.board = new Piece[8][8];
-        setupPieces();
+        this(Fen.START_POSITION);
+    }
+
+    // Board set up from a FEN string
+    public ChessBoard(String fen) {
+        this.bits = new BitBoard();
+        Fen.load(fen, bits);
+    }
+
+    // Independent copy of the position
+    public ChessBoard(ChessBoard other) {
+        this.bits = new BitBoard(other.bits);
+    }
+
+    // Takes over the other board's position; the Piece view catches up square by square when next read
+    public void copyFrom(ChessBoard other) {
+        bits.copyFrom(other.bits);
+    }
+
+    public BitBoard getBitBoard() {
+        return bits;
     }
 
     public Piece[][] getBoard() {
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                syncSquare(row, col);
+            }
+        }
         return board;
     }
 
     public Piece getPiece(int row, int column) {
         if (isValidPosition(row, column)) {
-            return board[row][column];
+            return syncSquare(row, column);
         }
         return null;
     }
 
     public void setPiece(int row, int column, Piece piece) {
         if (isValidPosition(row, column)) {
-            board[row][column] = piece;
+            int square = BitBoard.square(row, column);
+            view()[row][column] = piece;
             if (piece != null) {
+                bits.put(square, BitBoard.codeOf(piece));
                 piece.setPosition(new Position(row, column));
+            } else {
+                bits.remove(square);
             }
         }
     }
 
-    private void setupPieces() {
-        // Rooks
-        setPiece(0, 0, new Rook(PieceColor.BLACK, new Position(0, 0)));
-        setPiece(0, 7, new Rook(PieceColor.BLACK, new Position(0, 7)));
-        setPiece(7, 0, new Rook(PieceColor.WHITE, new Position(7, 0)));
-        setPiece(7, 7, new Rook(PieceColor.WHITE, new Position(7, 7)));
-
-        // Knights
-        setPiece(0, 1, new Knight(PieceColor.BLACK, new Position(0, 1)));
-        setPiece(0, 6, new Knight(PieceColor.BLACK, new Position(0, 6)));
-        setPiece(7, 1, new Knight(PieceColor.WHITE, new Position(7, 1)));
-        setPiece(7, 6, new Knight(PieceColor.WHITE, new Position(7, 6)));
-
-        // Bishops
-        setPiece(0, 2, new Bishop(PieceColor.BLACK, new Position(0, 2)));
-        setPiece(0, 5, new Bishop(PieceColor.BLACK, new Position(0, 5)));
-        setPiece(7, 2, new Bishop(PieceColor.WHITE, new Position(7, 2)));
-        setPiece(7, 5, new Bishop(PieceColor.WHITE, new Position(7, 5)));
-
-        // Queens
-        setPiece(0, 3, new Queen(PieceColor.BLACK, new Position(0, 3)));
-        setPiece(7, 3, new Queen(PieceColor.WHITE, new Position(7, 3)));
-
-        // Kings
-        setPiece(0, 4, new King(PieceColor.BLACK, new Position(0, 4)));
-        setPiece(7, 4, new King(PieceColor.WHITE, new Position(7, 4)));
+    // Rebuilds the Piece on a square only when it no longer matches the bitboards
+    private Piece syncSquare(int row, int column) {
+        int code = bits.pieceAt(BitBoard.square(row, column));
+        Piece[][] board = view();
+        Piece piece = board[row][column];
+        if (code == BitBoard.EMPTY) {
+            board[row][column] = null;
+            return null;
+        }
+        if (piece == null || BitBoard.codeOf(piece) != code) {
+            piece = BitBoard.createPiece(code, row, column);
+            board[row][column] = piece;
+        }
+        return piece;
+    }
 
-        // Pawns
-        for (int i = 0; i < 8; i++) {
-            setPiece(1, i, new Pawn(PieceColor.BLACK, new Position(1, i)));
-            setPiece(6, i, new Pawn(PieceColor.WHITE, new Position(6, i)));
+    private Piece[][] view() {
+        if (board == null) {
+            board = new Piece[8][8];
         }
+        return board;
     }
 
     public void movePiece(Position start, Position end) {
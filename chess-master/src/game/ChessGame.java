@@ -9,27 +9,46 @@ import java.util.ArrayList;
 
 public class ChessGame {
     private ChessBoard board;
-    private boolean whiteTurn = true;
     private Position selectedPosition;
-    private Position lastMovedPawn; // For en passant
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
 
     public ChessGame() {
         this.board = new ChessBoard();
     }
 
+    public ChessGame(String fen) {
+        this.board = new ChessBoard(fen);
+    }
+
+    // Game set up from PositionCodec bytes
+    public static ChessGame fromBytes(byte[] encoded) {
+        ChessGame game = new ChessGame(Fen.START_POSITION);
+        PositionCodec.decode(encoded, 0, game.board.getBitBoard());
+        return game;
+    }
+
+    // Copy of the game that can be searched or analysed without touching the original
+    public ChessGame(ChessGame other) {
+        this.board = new ChessBoard(other.board);
+    }
+
+    // Sets this game to the other's position and history, as a cheaper alternative to copying it
+    public void copyFrom(ChessGame other) {
+        board.copyFrom(other.board);
+        selectedPosition = null;
+    }
+
     public ChessBoard getBoard() {
         return this.board;
     }
 
     public void resetGame() {
         this.board = new ChessBoard();
-        this.whiteTurn = true;
         this.selectedPosition = null;
-        this.lastMovedPawn = null;
     }
 
     public PieceColor getCurrentPlayerColor() {
-        return whiteTurn ? PieceColor.WHITE : PieceColor.BLACK;
+        return BitBoard.pieceColor(board.getBitBoard().sideToMove());
     }
 
     public boolean isPieceSelected() {
@@ -62,268 +81,154 @@ public class ChessGame {
             return false;
         }
 
-        List<Position> legalMoves = getLegalMovesForPieceAt(start);
-        System.out.println("Legal moves: " + legalMoves);
-        if (!legalMoves.contains(end)) {
+        int move = findMove(start, end);
+        if (move == Move.NONE) {
             System.out.println("Invalid move: Not in legal moves");
             return false;
         }
 
-        // Check for castling
-        if (movingPiece instanceof King && Math.abs(start.getColumn() - end.getColumn()) == 2) {
-            performCastling(start, end);
-        } else {
-            // Check for en passant
-            if (movingPiece instanceof Pawn && end.getColumn() != start.getColumn() && board.getPiece(end.getRow(), end.getColumn()) == null) {
-                board.setPiece(lastMovedPawn.getRow(), lastMovedPawn.getColumn(), null);
-            }
-
-            board.movePiece(start, end);
-        }
-
-        // Update lastMovedPawn for en passant
-        if (movingPiece instanceof Pawn && Math.abs(start.getRow() - end.getRow()) == 2) {
-            lastMovedPawn = end;
-        } else {
-            lastMovedPawn = null;
-        }
-
-        whiteTurn = !whiteTurn;
-        System.out.println("Move completed. New turn: " + (whiteTurn ? "White" : "Black"));
+        makeMove(move);
+        System.out.println("Move completed. New turn: " + getCurrentPlayerColor());
         return true;
     }
 
-    private void performCastling(Position kingStart, Position kingEnd) {
-        int rookStartCol = kingEnd.getColumn() > kingStart.getColumn() ? 7 : 0;
-        int rookEndCol = kingEnd.getColumn() > kingStart.getColumn() ? 5 : 3;
-
-        board.movePiece(kingStart, kingEnd);
-        board.movePiece(new Position(kingStart.getRow(), rookStartCol), new Position(kingStart.getRow(), rookEndCol));
-    }
-
-    public boolean isInCheck(PieceColor kingColor) {
-        Position kingPosition = findKingPosition(kingColor);
-        if (kingPosition == null) {
-            return false; // If king is not found, it can't be in check
-        }
-        for (int row = 0; row < board.getBoard().length; row++) {
-            for (int col = 0; col < board.getBoard()[row].length; col++) {
-                Piece piece = board.getPiece(row, col);
-                if (piece != null && piece.getColor() != kingColor) {
-                    if (piece.isValidMove(kingPosition, board.getBoard())) {
-                        return true;
-                    }
-                }
+    // Promotions made through the Position API always promote to a queen
+    private int findMove(Position start, Position end) {
+        if (!board.isValidPosition(start.getRow(), start.getColumn())
+                || !board.isValidPosition(end.getRow(), end.getColumn())) {
+            return Move.NONE;
+        }
+        int from = BitBoard.square(start.getRow(), start.getColumn());
+        int to = BitBoard.square(end.getRow(), end.getColumn());
+        BitBoard bits = board.getBitBoard();
+        int count = MoveGenerator.generate(bits, BitBoard.colorOf(bits.pieceAt(from)), 1L << from, moveBuffer);
+        for (int i = 0; i < count; i++) {
+            int move = moveBuffer[i];
+            if (Move.to(move) == to && (!Move.isPromotion(move) || Move.promotionType(move) == BitBoard.QUEEN)) {
+                return move;
             }
         }
-        return false;
+        return Move.NONE;
     }
 
-    private Position findKingPosition(PieceColor color) {
-        for (int row = 0; row < board.getBoard().length; row++) {
-            for (int col = 0; col < board.getBoard()[row].length; col++) {
-                Piece piece = board.getPiece(row, col);
-                if (piece instanceof King && piece.getColor() == color) {
-                    return new Position(row, col);
-                }
+    // Legal move of the side to move in long algebraic notation ("e2e4", "e7e8q"), or Move.NONE
+    public int parseMove(String text) {
+        int count = generateLegalMoves(moveBuffer);
+        for (int i = 0; i < count; i++) {
+            if (Move.toString(moveBuffer[i]).equals(text)) {
+                return moveBuffer[i];
             }
         }
-        return null; // Return null instead of throwing an exception
+        return Move.NONE;
     }
 
-    public boolean isCheckMate(PieceColor kingColor) {
-        if (!isInCheck(kingColor)) {
-            return false;
-        }
-
-        return getAllLegalMoves(kingColor).isEmpty();
+    // Plays a packed legal move of the side to move; it can be taken back with unmakeMove
+    public void makeMove(int move) {
+        board.getBitBoard().make(move);
     }
 
-    public boolean isStalemate(PieceColor color) {
-        return !isInCheck(color) && getAllLegalMoves(color).isEmpty();
+    public void unmakeMove() {
+        board.getBitBoard().unmake();
     }
 
-    private List<Position> getAllLegalMoves(PieceColor color) {
-        List<Position> allLegalMoves = new ArrayList<>();
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = board.getPiece(row, col);
-                if (piece != null && piece.getColor() == color) {
-                    allLegalMoves.addAll(getLegalMovesForPieceAt(new Position(row, col)));
-                }
-            }
-        }
-        return allLegalMoves;
+    public String toFen() {
+        return Fen.toFen(board.getBitBoard());
     }
 
-    public List<Position> getLegalMovesForPieceAt(Position position) {
-        Piece selectedPiece = board.getPiece(position.getRow(), position.getColumn());
-        if (selectedPiece == null)
-            return new ArrayList<>();
-
-        List<Position> potentialMoves = new ArrayList<>();
-        switch (selectedPiece.getClass().getSimpleName()) {
-            case "Pawn":
-                addPawnMoves(position, selectedPiece.getColor(), potentialMoves);
-                break;
-            case "Rook":
-                addLineMoves(position, new int[][] { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } }, potentialMoves);
-                break;
-            case "Knight":
-                addSingleMoves(position, new int[][] { { 2, 1 }, { 2, -1 }, { -2, 1 }, { -2, -1 }, { 1, 2 }, { -1, 2 },
-                        { 1, -2 }, { -1, -2 } }, potentialMoves);
-                break;
-            case "Bishop":
-                addLineMoves(position, new int[][] { { 1, 1 }, { -1, -1 }, { 1, -1 }, { -1, 1 } }, potentialMoves);
-                break;
-            case "Queen":
-                addLineMoves(position, new int[][] { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, { 1, 1 }, { -1, -1 },
-                        { 1, -1 }, { -1, 1 } }, potentialMoves);
-                break;
-            case "King":
-                addSingleMoves(position, new int[][] { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, { 1, 1 }, { -1, -1 },
-                        { 1, -1 }, { -1, 1 } }, potentialMoves);
-                addCastlingMoves(position, selectedPiece.getColor(), potentialMoves);
-                break;
-        }
-
-        // Filter out moves that would leave the king in check
-        List<Position> legalMoves = new ArrayList<>();
-        for (Position move : potentialMoves) {
-            if (!wouldBeInCheckAfterMove(selectedPiece.getColor(), position, move)) {
-                legalMoves.add(move);
-            }
-        }
-
-        return legalMoves;
+    // Fixed-size binary form of the position, see PositionCodec
+    public byte[] toBytes() {
+        return PositionCodec.encode(board.getBitBoard());
     }
 
-    private boolean isPositionOnBoard(Position position) {
-        return position.getRow() >= 0 && position.getRow() < board.getBoard().length &&
-                position.getColumn() >= 0 && position.getColumn() < board.getBoard()[0].length;
+    // 64-bit Zobrist key identifying the position, side to move, castling rights and en-passant square
+    public long positionKey() {
+        return board.getBitBoard().key();
     }
 
-    private boolean wouldBeInCheckAfterMove(PieceColor kingColor, Position from, Position to) {
-        Piece temp = board.getPiece(to.getRow(), to.getColumn());
-        board.setPiece(to.getRow(), to.getColumn(), board.getPiece(from.getRow(), from.getColumn()));
-        board.setPiece(from.getRow(), from.getColumn(), null);
-
-        boolean inCheck = isInCheck(kingColor);
-
-        board.setPiece(from.getRow(), from.getColumn(), board.getPiece(to.getRow(), to.getColumn()));
-        board.setPiece(to.getRow(), to.getColumn(), temp);
-
-        return inCheck;
+    // Fills the buffer with the packed legal moves of the side to move and returns the count
+    public int generateLegalMoves(int[] moves) {
+        BitBoard bits = board.getBitBoard();
+        return MoveGenerator.generate(bits, bits.sideToMove(), moves);
     }
 
-    private void addLineMoves(Position position, int[][] directions, List<Position> legalMoves) {
-        for (int[] d : directions) {
-            Position newPos = new Position(position.getRow() + d[0], position.getColumn() + d[1]);
-            while (isPositionOnBoard(newPos)) {
-                if (board.getPiece(newPos.getRow(), newPos.getColumn()) == null) {
-                    legalMoves.add(new Position(newPos.getRow(), newPos.getColumn()));
-                    newPos = new Position(newPos.getRow() + d[0], newPos.getColumn() + d[1]);
-                } else {
-                    if (board.getPiece(newPos.getRow(), newPos.getColumn()).getColor() != board
-                            .getPiece(position.getRow(), position.getColumn()).getColor()) {
-                        legalMoves.add(newPos);
-                    }
-                    break;
-                }
-            }
-        }
+    // Captures and promotions only, for quiescence search
+    public int generateCaptures(int[] moves) {
+        BitBoard bits = board.getBitBoard();
+        return MoveGenerator.generateCaptures(bits, bits.sideToMove(), moves);
     }
 
-    private void addSingleMoves(Position position, int[][] moves, List<Position> legalMoves) {
-        for (int[] move : moves) {
-            Position newPos = new Position(position.getRow() + move[0], position.getColumn() + move[1]);
-            if (isPositionOnBoard(newPos) && (board.getPiece(newPos.getRow(), newPos.getColumn()) == null ||
-                    board.getPiece(newPos.getRow(), newPos.getColumn()).getColor() != board
-                            .getPiece(position.getRow(), position.getColumn()).getColor())) {
-                legalMoves.add(newPos);
-            }
-        }
+    // Net material won by a packed capture once the exchange on its target square has played out
+    public int see(int move) {
+        return board.getBitBoard().see(move);
     }
 
-    private void addPawnMoves(Position position, PieceColor color, List<Position> legalMoves) {
-        int direction = color == PieceColor.WHITE ? -1 : 1;
-        Position newPos = new Position(position.getRow() + direction, position.getColumn());
-        if (isPositionOnBoard(newPos) && board.getPiece(newPos.getRow(), newPos.getColumn()) == null) {
-            legalMoves.add(newPos);
-        }
-
-        if ((color == PieceColor.WHITE && position.getRow() == 6)
-                || (color == PieceColor.BLACK && position.getRow() == 1)) {
-            newPos = new Position(position.getRow() + 2 * direction, position.getColumn());
-            Position intermediatePos = new Position(position.getRow() + direction, position.getColumn());
-            if (isPositionOnBoard(newPos) && board.getPiece(newPos.getRow(), newPos.getColumn()) == null
-                    && board.getPiece(intermediatePos.getRow(), intermediatePos.getColumn()) == null) {
-                legalMoves.add(newPos);
-            }
-        }
-
-        int[] captureCols = { position.getColumn() - 1, position.getColumn() + 1 };
-        for (int col : captureCols) {
-            newPos = new Position(position.getRow() + direction, col);
-            if (isPositionOnBoard(newPos) && board.getPiece(newPos.getRow(), newPos.getColumn()) != null &&
-                    board.getPiece(newPos.getRow(), newPos.getColumn()).getColor() != color) {
-                legalMoves.add(newPos);
-            }
-        }
-
-        // En passant
-        if (lastMovedPawn != null) {
-            if (position.getRow() == lastMovedPawn.getRow() && Math.abs(position.getColumn() - lastMovedPawn.getColumn()) == 1) {
-                newPos = new Position(position.getRow() + direction, lastMovedPawn.getColumn());
-                legalMoves.add(newPos);
-            }
+    // Pieces of the given color the opponent can win material by capturing
+    public List<Position> getHangingPieces(PieceColor color) {
+        List<Position> hanging = new ArrayList<>();
+        long squares = board.getBitBoard().hangingPieces(BitBoard.color(color));
+        while (squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            squares &= squares - 1;
+            hanging.add(new Position(BitBoard.row(square), BitBoard.column(square)));
         }
+        return hanging;
     }
 
-    private void addCastlingMoves(Position kingPosition, PieceColor color, List<Position> moves) {
-        if (isInCheck(color)) return;
+    public boolean isInCheck(PieceColor kingColor) {
+        return board.getBitBoard().isInCheck(BitBoard.color(kingColor));
+    }
 
-        int row = kingPosition.getRow();
-        if ((color == PieceColor.WHITE && row != 7) || (color == PieceColor.BLACK && row != 0)) return;
+    public boolean isCheckMate(PieceColor kingColor) {
+        return isInCheck(kingColor) && !hasLegalMoves(kingColor);
+    }
 
-        // Kingside castling
-        if (canCastle(kingPosition, true)) {
-            moves.add(new Position(row, 6));
-        }
+    public boolean isStalemate(PieceColor color) {
+        return !isInCheck(color) && !hasLegalMoves(color);
+    }
 
-        // Queenside castling
-        if (canCastle(kingPosition, false)) {
-            moves.add(new Position(row, 2));
-        }
+    public int getHalfmoveClock() {
+        return board.getBitBoard().halfmoveClock();
     }
 
-    private boolean canCastle(Position kingPosition, boolean kingSide) {
-        int row = kingPosition.getRow();
-        int rookCol = kingSide ? 7 : 0;
-        int step = kingSide ? 1 : -1;
+    // The position has now occurred three times since the last capture or pawn move
+    public boolean isThreefoldRepetition() {
+        return board.getBitBoard().repetitions() >= 2;
+    }
 
-        Piece rook = board.getPiece(row, rookCol);
-        if (!(rook instanceof Rook) || rook.hasMoved()) return false;
+    // Fifty moves by each side without a capture or pawn move; a mate on the last move still counts
+    public boolean isFiftyMoveRule() {
+        return getHalfmoveClock() >= 100 && !isCheckMate(getCurrentPlayerColor());
+    }
 
-        for (int col = kingPosition.getColumn() + step; col != rookCol; col += step) {
-            if (board.getPiece(row, col) != null) return false;
-            if (isSquareUnderAttack(new Position(row, col), getCurrentPlayerColor())) return false;
-        }
+    public boolean isInsufficientMaterial() {
+        return board.getBitBoard().hasInsufficientMaterial();
+    }
 
-        return true;
+    private boolean hasLegalMoves(PieceColor color) {
+        return MoveGenerator.hasLegalMove(board.getBitBoard(), BitBoard.color(color), moveBuffer);
     }
 
-    private boolean isSquareUnderAttack(Position position, PieceColor defendingColor) {
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = board.getPiece(row, col);
-                if (piece != null && piece.getColor() != defendingColor) {
-                    if (piece.isValidMove(position, board.getBoard())) {
-                        return true;
-                    }
-                }
+    public List<Position> getLegalMovesForPieceAt(Position position) {
+        List<Position> legalMoves = new ArrayList<>();
+        if (!board.isValidPosition(position.getRow(), position.getColumn())) {
+            return legalMoves;
+        }
+        BitBoard bits = board.getBitBoard();
+        int square = BitBoard.square(position.getRow(), position.getColumn());
+        int code = bits.pieceAt(square);
+        if (code == BitBoard.EMPTY) {
+            return legalMoves;
+        }
+
+        int count = MoveGenerator.generate(bits, BitBoard.colorOf(code), 1L << square, moveBuffer);
+        long seen = 0L; // The four promotions share a destination square
+        for (int i = 0; i < count; i++) {
+            int to = Move.to(moveBuffer[i]);
+            if ((seen & (1L << to)) == 0) {
+                seen |= 1L << to;
+                legalMoves.add(Move.toPosition(moveBuffer[i]));
             }
         }
-        return false;
+        return legalMoves;
     }
-}
\ No newline at end of file
+}
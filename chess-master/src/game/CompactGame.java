@@ -0,0 +1,113 @@
+package game;
+
+import java.util.Arrays;
+
+// Game state small enough to keep thousands of games per process: the start position and the position after
+// the last capture or pawn move as PositionCodec bytes, and the packed moves. A game is played by loading it
+// into a scratch board, making the move there and appending it; a full ChessGame with the Piece view is only
+// built when a UI needs one. Not thread-safe.
+public final class CompactGame {
+    private final byte[] start;
+    // Position after the last irreversible move, which no later position can repeat
+    private final byte[] anchor;
+    private int anchorPly;
+    private int[] moves;
+    private int moveCount;
+
+    public CompactGame() {
+        this(Fen.START_POSITION);
+    }
+
+    public CompactGame(String fen) {
+        BitBoard bits = new BitBoard();
+        Fen.load(fen, bits);
+        this.start = PositionCodec.encode(bits);
+        this.anchor = start.clone();
+        this.moves = new int[16];
+    }
+
+    private CompactGame(byte[] start, int[] moves, int moveCount) {
+        this.start = start;
+        this.anchor = new byte[PositionCodec.ENCODED_SIZE];
+        this.moves = moves;
+        this.moveCount = moveCount;
+        BitBoard bits = new BitBoard();
+        replay(bits);
+        // The last position with a reset clock is the anchor
+        anchorPly = Math.max(0, moveCount - bits.halfmoveClock());
+        while (bits.ply() > anchorPly) {
+            bits.unmake();
+        }
+        PositionCodec.encode(bits, anchor, 0);
+    }
+
+    // Compact copy of a game, moves included
+    public static CompactGame of(ChessGame game) {
+        BitBoard bits = new BitBoard(game.getBoard().getBitBoard());
+        int[] moves = new int[Math.max(16, bits.ply())];
+        int count = bits.ply();
+        for (int i = count - 1; i >= 0; i--) {
+            moves[i] = bits.lastMove();
+            bits.unmake();
+        }
+        return new CompactGame(PositionCodec.encode(bits), moves, count);
+    }
+
+    // PositionCodec bytes of the position the game started from
+    public byte[] getStartPosition() {
+        return start.clone();
+    }
+
+    public int[] getMoves() {
+        return Arrays.copyOf(moves, moveCount);
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    // Sets up the current position with the moves since the last capture or pawn move on the undo stack,
+    // which is all BitBoard.repetitions needs
+    public void load(BitBoard bits) {
+        PositionCodec.decode(anchor, 0, bits);
+        for (int i = anchorPly; i < moveCount; i++) {
+            bits.make(moves[i]);
+        }
+    }
+
+    // Records a move just made on a board set up by load
+    public void append(BitBoard bits, int move) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moveCount * 2);
+        }
+        moves[moveCount++] = move;
+        if (bits.halfmoveClock() == 0) {
+            PositionCodec.encode(bits, anchor, 0);
+            anchorPly = moveCount;
+        }
+    }
+
+    // Full game with every move on its undo stack, for attaching a UI
+    public ChessGame toChessGame() {
+        ChessGame game = new ChessGame(Fen.START_POSITION);
+        replay(game.getBoard().getBitBoard());
+        return game;
+    }
+
+    public String toFen() {
+        BitBoard bits = new BitBoard();
+        load(bits);
+        return Fen.toFen(bits);
+    }
+
+    private void replay(BitBoard bits) {
+        PositionCodec.decode(start, 0, bits);
+        for (int i = 0; i < moveCount; i++) {
+            bits.make(moves[i]);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package game;
+
+public final class Fen {
+    public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_LETTERS = "PNBRQKpnbrqk";
+    // In the order of the castling right bits
+    private static final String CASTLING_LETTERS = "KQkq";
+
+    private Fen() {
+    }
+
+    // Replaces the contents of the board with the position described by the FEN string. Only positions the
+    // move generator and make/unmake can handle are accepted; anything else throws IllegalArgumentException.
+    public static void load(String fen, BitBoard bits) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        bits.clear();
+        String[] ranks = fields[0].split("/", -1);
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("FEN needs 8 ranks: " + fields[0]);
+        }
+        for (int row = 0; row < 8; row++) {
+            int col = 0;
+            for (char c : ranks[row].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    col += c - '0';
+                    continue;
+                }
+                int code = PIECE_LETTERS.indexOf(c);
+                if (code < 0 || col > 7) {
+                    throw new IllegalArgumentException("Invalid FEN placement: " + fields[0]);
+                }
+                if (BitBoard.typeOf(code) == BitBoard.PAWN && (row == 0 || row == 7)) {
+                    throw new IllegalArgumentException("Pawn on the first or last rank: " + fields[0]);
+                }
+                bits.put(BitBoard.square(row, col), code);
+                col++;
+            }
+            if (col != 8) {
+                throw new IllegalArgumentException("FEN rank " + (8 - row) + " does not have 8 squares: " + fields[0]);
+            }
+        }
+        // Move generation, check detection and the search all assume one king a side
+        if (Long.bitCount(bits.pieces(BitBoard.WHITE, BitBoard.KING)) != 1
+                || Long.bitCount(bits.pieces(BitBoard.BLACK, BitBoard.KING)) != 1) {
+            throw new IllegalArgumentException("FEN needs exactly one king per side: " + fields[0]);
+        }
+
+        if (!fields[1].equals("w") && !fields[1].equals("b")) {
+            throw new IllegalArgumentException("Invalid side to move: " + fields[1]);
+        }
+        bits.setSideToMove(fields[1].equals("b") ? BitBoard.BLACK : BitBoard.WHITE);
+        int side = bits.sideToMove();
+        // The side to move could capture the king
+        if (bits.isInCheck(1 - side)) {
+            throw new IllegalArgumentException("Side not to move is in check: " + fen);
+        }
+
+        String castling = fields.length > 2 ? fields[2] : "-";
+        int rights = 0;
+        if (!castling.equals("-")) {
+            for (char c : castling.toCharArray()) {
+                int right = CASTLING_LETTERS.indexOf(c);
+                if (right < 0) {
+                    throw new IllegalArgumentException("Invalid castling rights: " + castling);
+                }
+                rights |= 1 << right;
+            }
+        }
+        // Castling moves the king and rook from their home squares without checking they are there
+        if (!hasHomePieces(bits, BitBoard.WHITE_KINGSIDE, rights, 7, 7) || !hasHomePieces(bits, BitBoard.WHITE_QUEENSIDE, rights, 7, 0)
+                || !hasHomePieces(bits, BitBoard.BLACK_KINGSIDE, rights, 0, 7) || !hasHomePieces(bits, BitBoard.BLACK_QUEENSIDE, rights, 0, 0)) {
+            throw new IllegalArgumentException("Castling rights without the king and rook at home: " + fen);
+        }
+        bits.setCastlingRights(rights);
+
+        String enPassant = fields.length > 3 ? fields[3] : "-";
+        int enPassantSquare = enPassant.equals("-") ? BitBoard.NO_SQUARE : parseSquare(enPassant);
+        if (enPassantSquare != BitBoard.NO_SQUARE) {
+            // Behind a pawn of the side not to move that has just advanced two squares over it
+            int forward = side == BitBoard.WHITE ? 8 : -8;
+            int expectedRow = side == BitBoard.WHITE ? 2 : 5;
+            if (BitBoard.row(enPassantSquare) != expectedRow || bits.pieceAt(enPassantSquare) != BitBoard.EMPTY
+                    || bits.pieceAt(enPassantSquare - forward) != BitBoard.EMPTY
+                    || bits.pieceAt(enPassantSquare + forward) != BitBoard.code(1 - side, BitBoard.PAWN)) {
+                throw new IllegalArgumentException("Invalid en-passant square: " + enPassant);
+            }
+        }
+        // Kept only when a pawn can actually capture there, as BitBoard.make does, so keys match played positions
+        if (enPassantSquare != BitBoard.NO_SQUARE
+                && (Attacks.pawnAttacks(1 - side, enPassantSquare) & bits.pieces(side, BitBoard.PAWN)) == 0) {
+            enPassantSquare = BitBoard.NO_SQUARE;
+        }
+        bits.setEnPassantSquare(enPassantSquare);
+
+        int halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+        int fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        // The clock is kept in the packed undo state, which has room for MAX_HALFMOVE_CLOCK
+        if (halfmoveClock < 0 || halfmoveClock > BitBoard.MAX_HALFMOVE_CLOCK) {
+            throw new IllegalArgumentException("Invalid halfmove clock: " + fields[4]);
+        }
+        if (fullmoveNumber < 1) {
+            throw new IllegalArgumentException("Invalid fullmove number: " + fields[5]);
+        }
+        bits.setHalfmoveClock(halfmoveClock);
+        bits.setFullmoveNumber(fullmoveNumber);
+    }
+
+    private static boolean hasHomePieces(BitBoard bits, int right, int rights, int row, int rookCol) {
+        if ((rights & right) == 0) {
+            return true;
+        }
+        int color = row == 7 ? BitBoard.WHITE : BitBoard.BLACK;
+        return bits.pieceAt(BitBoard.square(row, 4)) == BitBoard.code(color, BitBoard.KING)
+                && bits.pieceAt(BitBoard.square(row, rookCol)) == BitBoard.code(color, BitBoard.ROOK);
+    }
+
+    // FEN of the position on the board; the inverse of load
+    public static String toFen(BitBoard bits) {
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int code = bits.pieceAt(BitBoard.square(row, col));
+                if (code == BitBoard.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                fen.append(PIECE_LETTERS.charAt(code));
+            }
+            if (empty > 0) {
+                fen.append((char) ('0' + empty));
+            }
+            if (row < 7) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(bits.sideToMove() == BitBoard.WHITE ? " w " : " b ");
+        int rights = bits.castlingRights();
+        if (rights == 0) {
+            fen.append('-');
+        } else {
+            if ((rights & BitBoard.WHITE_KINGSIDE) != 0) fen.append('K');
+            if ((rights & BitBoard.WHITE_QUEENSIDE) != 0) fen.append('Q');
+            if ((rights & BitBoard.BLACK_KINGSIDE) != 0) fen.append('k');
+            if ((rights & BitBoard.BLACK_QUEENSIDE) != 0) fen.append('q');
+        }
+        fen.append(' ');
+        fen.append(bits.enPassantSquare() == BitBoard.NO_SQUARE ? "-" : Move.squareName(bits.enPassantSquare()));
+        fen.append(' ').append(bits.halfmoveClock()).append(' ').append(bits.fullmoveNumber());
+        return fen.toString();
+    }
+
+    public static int parseSquare(String name) {
+        if (name.length() != 2) {
+            throw new IllegalArgumentException("Invalid square: " + name);
+        }
+        int col = name.charAt(0) - 'a';
+        int rank = name.charAt(1) - '0';
+        if (col < 0 || col > 7 || rank < 1 || rank > 8) {
+            throw new IllegalArgumentException("Invalid square: " + name);
+        }
+        return BitBoard.square(8 - rank, col);
+    }
+}
@@ -0,0 +1,90 @@
+package game;
+
+import utils.Position;
+
+// Moves are packed into an int: from (6 bits), to (6 bits), flags (4 bits), promotion type (3 bits)
+public final class Move {
+    public static final int NONE = 0;
+
+    public static final int CAPTURE = 1;
+    public static final int EN_PASSANT = 2;
+    public static final int CASTLING = 4;
+    public static final int DOUBLE_PUSH = 8;
+
+    private static final int TO_SHIFT = 6;
+    private static final int FLAGS_SHIFT = 12;
+    private static final int PROMOTION_SHIFT = 16;
+
+    private Move() {
+    }
+
+    public static int encode(int from, int to, int flags) {
+        return from | (to << TO_SHIFT) | (flags << FLAGS_SHIFT);
+    }
+
+    public static int encode(int from, int to, int flags, int promotionType) {
+        // Promotion types are stored off by one so that 0 means "no promotion"
+        return encode(from, to, flags) | ((promotionType + 1) << PROMOTION_SHIFT);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & 0x3F;
+    }
+
+    public static int flags(int move) {
+        return (move >>> FLAGS_SHIFT) & 0xF;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & ((CAPTURE | EN_PASSANT) << FLAGS_SHIFT)) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & (EN_PASSANT << FLAGS_SHIFT)) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        return (move & (CASTLING << FLAGS_SHIFT)) != 0;
+    }
+
+    public static boolean isDoublePush(int move) {
+        return (move & (DOUBLE_PUSH << FLAGS_SHIFT)) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move >>> PROMOTION_SHIFT) != 0;
+    }
+
+    // Piece type the pawn becomes (BitBoard.KNIGHT..BitBoard.QUEEN), or BitBoard.EMPTY
+    public static int promotionType(int move) {
+        return (move >>> PROMOTION_SHIFT) - 1;
+    }
+
+    public static Position fromPosition(int move) {
+        return new Position(BitBoard.row(from(move)), BitBoard.column(from(move)));
+    }
+
+    public static Position toPosition(int move) {
+        return new Position(BitBoard.row(to(move)), BitBoard.column(to(move)));
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + BitBoard.column(square)) + (8 - BitBoard.row(square));
+    }
+
+    // Long algebraic (UCI style) notation, e.g. e2e4 or e7e8q
+    public static String toString(int move) {
+        if (move == NONE) {
+            return "0000";
+        }
+        String text = squareName(from(move)) + squareName(to(move));
+        if (isPromotion(move)) {
+            text += "nbrq".charAt(promotionType(move) - BitBoard.KNIGHT);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,201 @@
+package game;
+
+public final class MoveGenerator {
+    // No legal chess position has more than 218 moves
+    public static final int MAX_MOVES = 256;
+
+    private static final long ALL_SQUARES = -1L;
+    private static final long RANK_8 = 0xFFL;
+    private static final long RANK_1 = 0xFFL << 56;
+
+    private MoveGenerator() {
+    }
+
+    // Writes every legal move of the given side into the buffer and returns how many were written
+    public static int generate(BitBoard bits, int color, int[] moves) {
+        return generate(bits, color, ALL_SQUARES, moves);
+    }
+
+    // Same as generate, but only for pieces standing on a square in fromMask
+    public static int generate(BitBoard bits, int color, long fromMask, int[] moves) {
+        return generate(bits, color, fromMask, ALL_SQUARES, ALL_SQUARES, moves);
+    }
+
+    // Legal captures, en-passant captures and promotions only, for quiescence search
+    public static int generateCaptures(BitBoard bits, int color, int[] moves) {
+        long targets = bits.occupancy(1 - color);
+        // Only pawns may add quiet moves to the last rank; for other pieces those are ordinary moves
+        long pawnTargets = targets | (color == BitBoard.WHITE ? RANK_8 : RANK_1);
+        if (bits.enPassantSquare() != BitBoard.NO_SQUARE) {
+            pawnTargets |= 1L << bits.enPassantSquare();
+        }
+        return generate(bits, color, ALL_SQUARES, targets, pawnTargets, moves);
+    }
+
+    private static int generate(BitBoard bits, int color, long fromMask, long targetMask, long pawnTargetMask,
+                                int[] moves) {
+        int count = 0;
+        int enemy = 1 - color;
+        long own = bits.occupancy(color);
+        long enemies = bits.occupancy(enemy);
+        long occupied = bits.allPieces();
+        int king = bits.kingSquare(color);
+
+        long checkers = 0L;
+        long pinned = 0L;
+        if (king != BitBoard.NO_SQUARE) {
+            checkers = bits.checkers(color);
+            pinned = bits.pinned(color);
+            if ((fromMask & (1L << king)) != 0) {
+                long targets = Attacks.kingAttacks(king) & ~own & ~bits.attackedSquares(enemy) & targetMask;
+                count = addMoves(king, targets, enemies, moves, count);
+                if (checkers == 0 && targetMask == ALL_SQUARES) {
+                    count = addCastling(bits, color, king, moves, count);
+                }
+            }
+            if ((checkers & (checkers - 1)) != 0) {
+                return count; // Only the king can answer a double check
+            }
+        }
+
+        long evasionMask = ALL_SQUARES;
+        if (checkers != 0) {
+            evasionMask = Attacks.between(king, Long.numberOfTrailingZeros(checkers)) | checkers;
+        }
+        long checkMask = evasionMask & targetMask;
+
+        // A pinned knight can never move
+        long knights = bits.pieces(color, BitBoard.KNIGHT) & ~pinned & fromMask;
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            count = addMoves(from, Attacks.knightAttacks(from) & ~own & checkMask, enemies, moves, count);
+        }
+
+        long sliders = (bits.pieces(color, BitBoard.BISHOP) | bits.pieces(color, BitBoard.ROOK)
+                | bits.pieces(color, BitBoard.QUEEN)) & fromMask;
+        while (sliders != 0) {
+            int from = Long.numberOfTrailingZeros(sliders);
+            sliders &= sliders - 1;
+            long targets = Attacks.attacks(BitBoard.typeOf(bits.pieceAt(from)), color, from, occupied) & ~own & checkMask;
+            if ((pinned & (1L << from)) != 0) {
+                targets &= Attacks.line(king, from);
+            }
+            count = addMoves(from, targets, enemies, moves, count);
+        }
+
+        long pawns = bits.pieces(color, BitBoard.PAWN) & fromMask;
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            count = addPawnMoves(bits, color, from, pinned, evasionMask & pawnTargetMask, pawnTargetMask, moves, count);
+        }
+        return count;
+    }
+
+    public static boolean hasLegalMove(BitBoard bits, int color, int[] buffer) {
+        return generate(bits, color, buffer) > 0;
+    }
+
+    private static int addMoves(int from, long targets, long enemies, int[] moves, int count) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves[count++] = Move.encode(from, to, (enemies & (1L << to)) != 0 ? Move.CAPTURE : 0);
+        }
+        return count;
+    }
+
+    private static int addPawnMoves(BitBoard bits, int color, int from, long pinned, long checkMask, long targetMask,
+                                    int[] moves, int count) {
+        long empty = ~bits.allPieces();
+        long enemies = bits.occupancy(1 - color);
+        int forward = color == BitBoard.WHITE ? -8 : 8;
+        int startRow = color == BitBoard.WHITE ? 6 : 1;
+        int promotionRow = color == BitBoard.WHITE ? 0 : 7;
+
+        long pinMask = ALL_SQUARES;
+        if ((pinned & (1L << from)) != 0) {
+            pinMask = Attacks.line(bits.kingSquare(color), from);
+        }
+
+        int single = from + forward;
+        if ((empty & (1L << single)) != 0) {
+            if (((checkMask & pinMask) & (1L << single)) != 0) {
+                count = addPawnMove(from, single, 0, promotionRow, moves, count);
+            }
+            int push = single + forward;
+            if (BitBoard.row(from) == startRow && (empty & (1L << push)) != 0
+                    && ((checkMask & pinMask) & (1L << push)) != 0) {
+                moves[count++] = Move.encode(from, push, Move.DOUBLE_PUSH);
+            }
+        }
+
+        long captures = Attacks.pawnAttacks(color, from) & enemies & checkMask & pinMask;
+        while (captures != 0) {
+            int to = Long.numberOfTrailingZeros(captures);
+            captures &= captures - 1;
+            count = addPawnMove(from, to, Move.CAPTURE, promotionRow, moves, count);
+        }
+
+        // The en-passant square belongs to the side to move; the other side's pawns may attack it too
+        int enPassant = bits.enPassantSquare();
+        if (enPassant != BitBoard.NO_SQUARE && color == bits.sideToMove() && (Attacks.pawnAttacks(color, from) & targetMask & (1L << enPassant)) != 0
+                && isLegalEnPassant(bits, color, from, enPassant)) {
+            moves[count++] = Move.encode(from, enPassant, Move.EN_PASSANT);
+        }
+        return count;
+    }
+
+    private static int addPawnMove(int from, int to, int flags, int promotionRow, int[] moves, int count) {
+        if (BitBoard.row(to) == promotionRow) {
+            for (int type = BitBoard.QUEEN; type >= BitBoard.KNIGHT; type--) {
+                moves[count++] = Move.encode(from, to, flags, type);
+            }
+        } else {
+            moves[count++] = Move.encode(from, to, flags);
+        }
+        return count;
+    }
+
+    // En passant removes two pieces from the board at once, so it is tested on the resulting occupancy,
+    // which covers checks, pins and the rank discovery the pin mask cannot see
+    private static boolean isLegalEnPassant(BitBoard bits, int color, int from, int to) {
+        int king = bits.kingSquare(color);
+        if (king == BitBoard.NO_SQUARE) {
+            return true;
+        }
+        int captured = BitBoard.square(BitBoard.row(from), BitBoard.column(to));
+        long occupied = (bits.allPieces() & ~(1L << from) & ~(1L << captured)) | (1L << to);
+        return (bits.attackersTo(king, 1 - color, occupied) & ~(1L << captured)) == 0;
+    }
+
+    private static int addCastling(BitBoard bits, int color, int king, int[] moves, int count) {
+        int rights = bits.castlingRights();
+        int kingSide = color == BitBoard.WHITE ? BitBoard.WHITE_KINGSIDE : BitBoard.BLACK_KINGSIDE;
+        int queenSide = color == BitBoard.WHITE ? BitBoard.WHITE_QUEENSIDE : BitBoard.BLACK_QUEENSIDE;
+        int row = color == BitBoard.WHITE ? 7 : 0;
+        if (king != BitBoard.square(row, 4)) {
+            return count;
+        }
+        if ((rights & kingSide) != 0 && canCastle(bits, color, king, BitBoard.square(row, 7), BitBoard.square(row, 6))) {
+            moves[count++] = Move.encode(king, BitBoard.square(row, 6), Move.CASTLING);
+        }
+        if ((rights & queenSide) != 0 && canCastle(bits, color, king, BitBoard.square(row, 0), BitBoard.square(row, 2))) {
+            moves[count++] = Move.encode(king, BitBoard.square(row, 2), Move.CASTLING);
+        }
+        return count;
+    }
+
+    // Every square between king and rook must be empty, but only the squares the king crosses must be safe
+    private static boolean canCastle(BitBoard bits, int color, int king, int rookSquare, int kingTarget) {
+        if (bits.pieceAt(rookSquare) != BitBoard.code(color, BitBoard.ROOK)) {
+            return false;
+        }
+        if ((Attacks.between(king, rookSquare) & bits.allPieces()) != 0) {
+            return false;
+        }
+        long kingPath = Attacks.between(king, kingTarget) | (1L << kingTarget);
+        return (kingPath & bits.attackedSquares(1 - color)) == 0;
+    }
+}
@@ -0,0 +1,178 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Counts leaf nodes of the legal move tree; used both to verify MoveGenerator and to measure its speed
+public final class Perft {
+    // Standard positions with known node counts (FEN, depth, expected nodes)
+    private static final Object[][] SUITE = {
+            { Fen.START_POSITION, 5, 4865609L },
+            { "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 4, 4085603L },
+            { "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 6, 11030083L },
+            { "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 5, 15833292L },
+            { "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 4, 2103487L },
+            { "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 4, 3894594L },
+    };
+
+    private Perft() {
+    }
+
+    public static long perft(ChessGame game, int depth) {
+        return perft(game.getBoard().getBitBoard(), depth);
+    }
+
+    public static long perft(BitBoard bits, int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        return count(bits, depth, new int[depth + 1][MoveGenerator.MAX_MOVES]);
+    }
+
+    private static long count(BitBoard bits, int depth, int[][] buffers) {
+        int[] moves = buffers[depth];
+        int n = MoveGenerator.generate(bits, bits.sideToMove(), moves);
+        if (depth == 1) {
+            return n; // Bulk counting: the legal moves at the last ply are the leaves
+        }
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            bits.make(moves[i]);
+            nodes += count(bits, depth - 1, buffers);
+            bits.unmake();
+        }
+        return nodes;
+    }
+
+    // Node count below each root move, in generation order; subtrees are searched on the pool
+    public static List<RootCount> divide(BitBoard bits, int depth, ForkJoinPool pool) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int n = MoveGenerator.generate(bits, bits.sideToMove(), moves);
+        List<SubtreeTask> tasks = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            SubtreeTask task = new SubtreeTask(new BitBoard(bits), moves[i], depth - 1);
+            tasks.add(task);
+            pool.execute(task);
+        }
+        List<RootCount> result = new ArrayList<>();
+        for (SubtreeTask task : tasks) {
+            result.add(new RootCount(task.move, task.join()));
+        }
+        return result;
+    }
+
+    public static long parallelPerft(BitBoard bits, int depth, ForkJoinPool pool) {
+        if (depth <= 1) {
+            return perft(bits, depth);
+        }
+        long nodes = 0;
+        for (RootCount count : divide(bits, depth, pool)) {
+            nodes += count.nodes;
+        }
+        return nodes;
+    }
+
+    public static final class RootCount {
+        public final int move;
+        public final long nodes;
+
+        RootCount(int move, long nodes) {
+            this.move = move;
+            this.nodes = nodes;
+        }
+    }
+
+    // Never serialized; ForkJoinTask is only Serializable for historical reasons
+    @SuppressWarnings("serial")
+    private static final class SubtreeTask extends RecursiveTask<Long> {
+        private final BitBoard bits;
+        private final int move;
+        private final int depth;
+
+        SubtreeTask(BitBoard bits, int move, int depth) {
+            this.bits = bits;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            bits.make(move);
+            return perft(bits, depth);
+        }
+    }
+
+    // Usage: Perft [--divide] [--threads N] <depth> [fen]
+    //        Perft --suite [--threads N]
+    public static void main(String[] args) {
+        boolean divide = false;
+        boolean suite = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int depth = 5;
+        StringBuilder fen = new StringBuilder();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--divide": divide = true; break;
+                case "--suite": suite = true; break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                default:
+                    if (fen.length() == 0 && args[i].matches("\\d+")) {
+                        depth = Integer.parseInt(args[i]);
+                    } else {
+                        fen.append(fen.length() > 0 ? " " : "").append(args[i]);
+                    }
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            if (suite) {
+                System.exit(runSuite(pool) ? 0 : 1);
+            }
+            BitBoard bits = new BitBoard();
+            Fen.load(fen.length() > 0 ? fen.toString() : Fen.START_POSITION, bits);
+            long start = System.nanoTime();
+            long nodes;
+            if (divide) {
+                nodes = 0;
+                for (RootCount count : divide(bits, depth, pool)) {
+                    System.out.println(Move.toString(count.move) + ": " + count.nodes);
+                    nodes += count.nodes;
+                }
+            } else {
+                nodes = parallelPerft(bits, depth, pool);
+            }
+            report("perft(" + depth + ")", nodes, System.nanoTime() - start);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static boolean runSuite(ForkJoinPool pool) {
+        boolean allPassed = true;
+        long totalNodes = 0;
+        long start = System.nanoTime();
+        for (Object[] entry : SUITE) {
+            BitBoard bits = new BitBoard();
+            Fen.load((String) entry[0], bits);
+            int depth = (Integer) entry[1];
+            long expected = (Long) entry[2];
+            long positionStart = System.nanoTime();
+            long nodes = parallelPerft(bits, depth, pool);
+            boolean passed = nodes == expected;
+            allPassed &= passed;
+            totalNodes += nodes;
+            report((passed ? "OK   " : "FAIL ") + entry[0] + " depth " + depth + " expected " + expected,
+                    nodes, System.nanoTime() - positionStart);
+        }
+        report(allPassed ? "Suite passed" : "Suite FAILED", totalNodes, System.nanoTime() - start);
+        return allPassed;
+    }
+
+    private static void report(String label, long nodes, long nanos) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        System.out.printf("%s: %d nodes in %.3f s (%.0f nodes/s)%n", label, nodes, seconds, nodes / seconds);
+    }
+}
@@ -0,0 +1,93 @@
+package game;
+
+// Fixed-size binary form of a position, for indexes and the wire. Layout of the ENCODED_SIZE bytes:
+//   0-7    occupied squares, a big-endian bitboard
+//   8-23   piece code of each occupied square in ascending square order, one nibble each (at most 32 pieces)
+//   24     castling rights in the low nibble, en-passant file + 1 in the high nibble (0 for none)
+//   25     side to move in the top bit, halfmove clock (capped at 127) in the rest
+//   26-27  fullmove number, big-endian
+public final class PositionCodec {
+    public static final int ENCODED_SIZE = 28;
+
+    private static final int MAX_PIECES = 32;
+
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(BitBoard bits) {
+        byte[] out = new byte[ENCODED_SIZE];
+        encode(bits, out, 0);
+        return out;
+    }
+
+    public static void encode(BitBoard bits, byte[] out, int offset) {
+        long occupied = bits.allPieces();
+        if (Long.bitCount(occupied) > MAX_PIECES) {
+            throw new IllegalArgumentException("Too many pieces to encode: " + Long.bitCount(occupied));
+        }
+        for (int i = 0; i < 8; i++) {
+            out[offset + i] = (byte) (occupied >>> (56 - 8 * i));
+        }
+        for (int i = 8; i < 24; i++) {
+            out[offset + i] = 0;
+        }
+        int index = 0;
+        long remaining = occupied;
+        while (remaining != 0) {
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            int code = bits.pieceAt(square);
+            out[offset + 8 + (index >> 1)] |= (byte) ((index & 1) == 0 ? code << 4 : code);
+            index++;
+        }
+
+        int enPassant = bits.enPassantSquare();
+        int enPassantFile = enPassant == BitBoard.NO_SQUARE ? 0 : BitBoard.column(enPassant) + 1;
+        out[offset + 24] = (byte) (bits.castlingRights() | (enPassantFile << 4));
+        out[offset + 25] = (byte) ((bits.sideToMove() << 7) | Math.min(bits.halfmoveClock(), 127));
+        int fullmove = Math.min(bits.fullmoveNumber(), 0xFFFF);
+        out[offset + 26] = (byte) (fullmove >>> 8);
+        out[offset + 27] = (byte) fullmove;
+    }
+
+    // Replaces the contents of the board with the encoded position
+    public static void decode(byte[] in, int offset, BitBoard bits) {
+        if (in.length - offset < ENCODED_SIZE) {
+            throw new IllegalArgumentException("Encoded position needs " + ENCODED_SIZE + " bytes");
+        }
+        long occupied = 0L;
+        for (int i = 0; i < 8; i++) {
+            occupied = (occupied << 8) | (in[offset + i] & 0xFF);
+        }
+        if (Long.bitCount(occupied) > MAX_PIECES) {
+            throw new IllegalArgumentException("Invalid encoded position: too many pieces");
+        }
+
+        bits.clear();
+        int index = 0;
+        while (occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int packed = in[offset + 8 + (index >> 1)];
+            int code = (index & 1) == 0 ? (packed >> 4) & 0xF : packed & 0xF;
+            if (code > 11) {
+                throw new IllegalArgumentException("Invalid encoded piece: " + code);
+            }
+            bits.put(square, code);
+            index++;
+        }
+
+        int side = (in[offset + 25] >> 7) & 1;
+        bits.setSideToMove(side);
+        bits.setCastlingRights(in[offset + 24] & 0xF);
+        int enPassantFile = (in[offset + 24] >> 4) & 0xF;
+        if (enPassantFile > 8) {
+            throw new IllegalArgumentException("Invalid encoded en-passant file: " + enPassantFile);
+        }
+        // The square is behind the pawn that just moved two squares: row 2 if black moved, row 5 if white did
+        bits.setEnPassantSquare(enPassantFile == 0 ? BitBoard.NO_SQUARE
+                : BitBoard.square(side == BitBoard.WHITE ? 2 : 5, enPassantFile - 1));
+        bits.setHalfmoveClock(in[offset + 25] & 0x7F);
+        bits.setFullmoveNumber(((in[offset + 26] & 0xFF) << 8) | (in[offset + 27] & 0xFF));
+    }
+}
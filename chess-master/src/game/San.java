@@ -0,0 +1,184 @@
+package game;
+
+import java.nio.charset.StandardCharsets;
+
+// Standard algebraic notation ("Nbd2", "exd6", "O-O", "e8=Q+") for moves of the side to move
+public final class San {
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    private San() {
+    }
+
+    // Returns the legal move the SAN text describes, or Move.NONE if there is none or it is ambiguous.
+    // Check and annotation suffixes are ignored, and "0-0" is accepted for castling
+    public static int parse(BitBoard bits, String san, int[] buffer) {
+        byte[] text = san.getBytes(StandardCharsets.ISO_8859_1);
+        return parse(bits, text, 0, text.length, buffer);
+    }
+
+    // Same as parse, reading the SAN from bytes so a streaming reader need not build a string per move
+    public static int parse(BitBoard bits, byte[] text, int offset, int length, int[] buffer) {
+        int end = offset + length;
+        while (end > offset && isSuffix(text[end - 1])) {
+            end--;
+        }
+        if (end - offset < 2) {
+            return Move.NONE;
+        }
+
+        int side = bits.sideToMove();
+        if (text[offset] == 'O' || text[offset] == '0') {
+            boolean kingSide = isCastling(text, offset, end, 3);
+            if (!kingSide && !isCastling(text, offset, end, 5)) {
+                return Move.NONE;
+            }
+            int count = MoveGenerator.generate(bits, side, bits.pieces(side, BitBoard.KING), buffer);
+            for (int i = 0; i < count; i++) {
+                int move = buffer[i];
+                if (Move.isCastling(move) && (BitBoard.column(Move.to(move)) == 6) == kingSide) {
+                    return move;
+                }
+            }
+            return Move.NONE;
+        }
+
+        int promotion = -1;
+        if (end - offset >= 4 && text[end - 2] == '=') {
+            promotion = pieceIndex(text[end - 1]);
+            end -= 2;
+        } else if (pieceIndex(text[end - 1]) > 0) {
+            promotion = pieceIndex(text[end - 1]); // "e8Q" without the equals sign
+            end--;
+        }
+        if (promotion == 0 || end - offset < 2) {
+            return Move.NONE;
+        }
+
+        int type = BitBoard.PAWN;
+        int start = offset;
+        int piece = pieceIndex(text[offset]);
+        if (piece > 0) {
+            type = piece;
+            start++;
+        }
+        int file = text[end - 2] - 'a';
+        int rank = text[end - 1] - '1';
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+            return Move.NONE;
+        }
+        int to = BitBoard.square(7 - rank, file);
+
+        // Whatever sits between the piece letter and the destination narrows down the origin
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            byte c = text[i];
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                return Move.NONE;
+            }
+        }
+
+        // Only the named piece type needs its moves generated, which is most of the cost of resolving a move
+        int count = MoveGenerator.generate(bits, side, bits.pieces(side, type), buffer);
+        int found = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = buffer[i];
+            int from = Move.from(move);
+            if (Move.to(move) != to || BitBoard.typeOf(bits.pieceAt(from)) != type
+                    || (fromFile >= 0 && BitBoard.column(from) != fromFile)
+                    || (fromRank >= 0 && 7 - BitBoard.row(from) != fromRank)) {
+                continue;
+            }
+            if (Move.isPromotion(move) ? Move.promotionType(move) != (promotion < 0 ? BitBoard.QUEEN : promotion)
+                    : promotion >= 0) {
+                continue;
+            }
+            if (found != Move.NONE) {
+                return Move.NONE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    private static boolean isSuffix(byte c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+
+    private static int pieceIndex(byte c) {
+        return PIECE_LETTERS.indexOf(c);
+    }
+
+    // "O-O" (length 3) or "O-O-O" (length 5), written with letter O or digit zero
+    private static boolean isCastling(byte[] text, int offset, int end, int length) {
+        if (end - offset != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            byte c = text[offset + i];
+            if (i % 2 == 1 ? c != '-' : c != text[offset]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // SAN of a legal move of the side to move, including the check or mate suffix
+    public static String format(BitBoard bits, int move, int[] buffer) {
+        StringBuilder san = new StringBuilder(8);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = BitBoard.typeOf(bits.pieceAt(from));
+        boolean capture = Move.isCapture(move) || Move.isEnPassant(move);
+
+        if (Move.isCastling(move)) {
+            san.append(BitBoard.column(to) == 6 ? "O-O" : "O-O-O");
+        } else if (type == BitBoard.PAWN) {
+            if (capture) {
+                san.append((char) ('a' + BitBoard.column(from))).append('x');
+            }
+            san.append(Move.squareName(to));
+            if (Move.isPromotion(move)) {
+                san.append('=').append(PIECE_LETTERS.charAt(Move.promotionType(move)));
+            }
+        } else {
+            san.append(PIECE_LETTERS.charAt(type));
+            int count = MoveGenerator.generate(bits, bits.sideToMove(), buffer);
+            boolean ambiguous = false;
+            boolean sameFile = false;
+            boolean sameRank = false;
+            for (int i = 0; i < count; i++) {
+                int other = Move.from(buffer[i]);
+                if (other != from && Move.to(buffer[i]) == to && bits.pieceAt(other) == bits.pieceAt(from)) {
+                    ambiguous = true;
+                    sameFile |= BitBoard.column(other) == BitBoard.column(from);
+                    sameRank |= BitBoard.row(other) == BitBoard.row(from);
+                }
+            }
+            if (ambiguous) {
+                if (!sameFile) {
+                    san.append((char) ('a' + BitBoard.column(from)));
+                } else if (!sameRank) {
+                    san.append((char) ('8' - BitBoard.row(from)));
+                } else {
+                    san.append(Move.squareName(from));
+                }
+            }
+            if (capture) {
+                san.append('x');
+            }
+            san.append(Move.squareName(to));
+        }
+
+        bits.make(move);
+        if (bits.isInCheck(bits.sideToMove())) {
+            san.append(MoveGenerator.hasLegalMove(bits, bits.sideToMove(), buffer) ? '+' : '#');
+        }
+        bits.unmake();
+        return san.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package game;
+
+import java.util.SplittableRandom;
+
+public final class Zobrist {
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long SIDE;
+
+    static {
+        // Fixed seed so keys stay stable across runs and can be stored in books and tables
+        SplittableRandom random = new SplittableRandom(0x5EEDC0DE5EEDC0DEL);
+        for (long[] squares : PIECE_SQUARE) {
+            for (int square = 0; square < 64; square++) {
+                squares[square] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+            EN_PASSANT_FILE[i] = random.nextLong();
+        }
+        // Each castling right gets its own key and combinations are their XOR
+        long[] rights = { random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong() };
+        for (int mask = 0; mask < CASTLING.length; mask++) {
+            for (int bit = 0; bit < 4; bit++) {
+                if ((mask & (1 << bit)) != 0) {
+                    CASTLING[mask] ^= rights[bit];
+                }
+            }
+        }
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int code, int square) {
+        return PIECE_SQUARE[code][square];
+    }
+
+    public static long castling(int castlingRights) {
+        return CASTLING[castlingRights];
+    }
+
+    public static long enPassant(int square) {
+        return square == BitBoard.NO_SQUARE ? 0L : EN_PASSANT_FILE[BitBoard.column(square)];
+    }
+
+    // XORed in when black is to move
+    public static long side() {
+        return SIDE;
+    }
+}
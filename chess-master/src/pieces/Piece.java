@@ -1,5 +1,7 @@
 package pieces;
 
+import game.Attacks;
+import game.BitBoard;
 import utils.PieceColor;
 import utils.Position;
 
@@ -42,15 +44,14 @@ public abstract class Piece {
     }
 
     protected boolean isPathClear(Position start, Position end, Piece[][] board) {
-        int rowStep = Integer.compare(end.getRow(), start.getRow());
-        int colStep = Integer.compare(end.getColumn(), start.getColumn());
-
-        Position current = new Position(start.getRow() + rowStep, start.getColumn() + colStep);
-        while (!current.equals(end)) {
-            if (board[current.getRow()][current.getColumn()] != null) {
+        long path = Attacks.between(BitBoard.square(start.getRow(), start.getColumn()),
+                BitBoard.square(end.getRow(), end.getColumn()));
+        while (path != 0) {
+            int square = Long.numberOfTrailingZeros(path);
+            path &= path - 1;
+            if (board[BitBoard.row(square)][BitBoard.column(square)] != null) {
                 return false;
             }
-            current = new Position(current.getRow() + rowStep, current.getColumn() + colStep);
         }
         return true;
     }
@@ -0,0 +1,227 @@
+package server;
+
+import game.CompactGame;
+import game.Fen;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless server hosting many games at once over a line-based TCP protocol. Each connection is served by
+// its own virtual thread, which only parses requests and writes replies: moves are validated and played on
+// a small pool of platform threads, so a burst of moves cannot starve the network side and the time a move
+// spends queued for validation shows up in the latency histogram. A connection may play any number of games,
+// but only the games it created; they are closed when it ends.
+//   NEW [fen]          -> OK <game>                 (ERR for a malformed or illegal position)
+//   MOVE <game> <move> -> OK <status> | ILLEGAL     (move in long algebraic notation, e.g. e2e4 or e7e8q)
+//   FEN <game>         -> OK <fen>
+//   CLOSE <game>       -> OK
+//   STATS              -> OK games=<n> latency <percentiles> validation <percentiles>
+//   QUIT
+// Unknown games, including those of other connections, and malformed requests are answered with ERR <reason>.
+// Usage: GameServer [--port N] [--validators N]
+public class GameServer implements Closeable {
+    public static final int DEFAULT_PORT = 7878;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService validators;
+    private final Map<Long, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+    private final LatencyHistogram validationTime = new LatencyHistogram();
+    private volatile boolean running = true;
+
+    public GameServer(int port, int validatorThreads) throws IOException {
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        this.validators = Executors.newFixedThreadPool(Math.max(1, validatorThreads), runnable -> {
+            Thread thread = new Thread(runnable, "move-validator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    // Time from a move arriving to its validation finishing, queueing included
+    public LatencyHistogram getMoveLatency() {
+        return moveLatency;
+    }
+
+    // Time spent validating and playing moves on the validator threads alone
+    public LatencyHistogram getValidationTime() {
+        return validationTime;
+    }
+
+    // Accepts connections until the server is closed
+    public void serve() throws IOException {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (!running) {
+                    return;
+                }
+                throw e;
+            }
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    private void handle(Socket socket) {
+        // Only ever touched by this connection's thread
+        Set<Long> owned = new HashSet<>();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+            socket.setTcpNoDelay(true);
+            String line;
+            while ((line = in.readLine()) != null) {
+                String reply = respond(line.trim(), owned);
+                if (reply == null) {
+                    break;
+                }
+                out.write(reply);
+                out.write('\n');
+                // Replies are only flushed once the client has no further requests buffered
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // The client went away
+        } finally {
+            for (long id : owned) {
+                sessions.remove(id);
+            }
+        }
+    }
+
+    // Reply to one request line from a connection owning the given games, or null to end the connection
+    String respond(String line, Set<Long> owned) {
+        String[] parts = line.split(" ", 3);
+        try {
+            switch (parts[0]) {
+                case "NEW": {
+                    // The FEN is parsed before an id is taken, so a rejected position uses none up
+                    CompactGame game = new CompactGame(parts.length > 1 ? line.substring(4).trim() : Fen.START_POSITION);
+                    long id = nextId.getAndIncrement();
+                    sessions.put(id, new GameSession(id, game));
+                    owned.add(id);
+                    return "OK " + id;
+                }
+                case "MOVE": {
+                    if (parts.length < 3) {
+                        return "ERR usage: MOVE <game> <move>";
+                    }
+                    GameSession session = session(parts[1], owned);
+                    String status = validate(session, parts[2]);
+                    return status == null ? "ILLEGAL" : "OK " + status;
+                }
+                case "FEN":
+                    return "OK " + session(parts.length > 1 ? parts[1] : "", owned).toFen();
+                case "CLOSE": {
+                    long id = session(parts.length > 1 ? parts[1] : "", owned).getId();
+                    owned.remove(id);
+                    sessions.remove(id);
+                    return "OK";
+                }
+                case "STATS":
+                    return "OK games=" + sessions.size() + " latency " + moveLatency + " validation " + validationTime;
+                case "QUIT":
+                    return null;
+                default:
+                    return "ERR unknown command: " + parts[0];
+            }
+        } catch (IllegalArgumentException e) {
+            return "ERR " + e.getMessage();
+        } catch (RuntimeException e) {
+            // A bug must not take the connection down with it
+            return "ERR internal error: " + e;
+        }
+    }
+
+    private GameSession session(String id, Set<Long> owned) {
+        try {
+            long key = Long.parseLong(id);
+            GameSession session = owned.contains(key) ? sessions.get(key) : null;
+            if (session != null) {
+                return session;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below like any other unknown game
+        }
+        throw new IllegalArgumentException("unknown game: " + id);
+    }
+
+    // Hands the move to a validator thread; the calling virtual thread parks until it is done
+    private String validate(GameSession session, String move) {
+        long start = System.nanoTime();
+        Future<String> result = validators.submit(() -> {
+            long started = System.nanoTime();
+            String status = session.play(move);
+            validationTime.record(System.nanoTime() - started);
+            return status;
+        });
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException("interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalArgumentException(String.valueOf(e.getCause()));
+        } finally {
+            moveLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        connections.shutdownNow();
+        validators.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int validators = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--validators": validators = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        try (GameServer server = new GameServer(port, validators)) {
+            System.out.println("Game server listening on port " + server.getPort() + " with " + validators + " validator threads");
+            server.serve();
+        }
+    }
+}
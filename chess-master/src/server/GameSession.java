@@ -0,0 +1,105 @@
+package server;
+
+import game.ChessGame;
+import game.CompactGame;
+import game.Move;
+import utils.PieceColor;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// One game hosted by the server. Every operation holds the session's own lock, so two connections playing
+// the same game are serialised while different games never wait for each other. The lock is a
+// ReentrantLock rather than synchronized so a virtual thread waiting on it does not pin its carrier.
+// Between moves a session only keeps a CompactGame; moves are played on a scratch game of the validator thread.
+public class GameSession {
+    public static final String ONGOING = "ONGOING";
+
+    private static final ThreadLocal<ChessGame> SCRATCH = ThreadLocal.withInitial(ChessGame::new);
+
+    private final long id;
+    private final CompactGame game;
+    private final ReentrantLock lock = new ReentrantLock();
+    private String status;
+
+    // The game comes from a FEN Fen.load has already checked, so it is a legal position, but it may be over
+    public GameSession(long id, CompactGame game) {
+        this.id = id;
+        this.game = game;
+        this.status = computeStatus(game.toChessGame());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    // Plays a move in long algebraic notation and returns the status after it, or null if the move is
+    // not legal here or the game is already over
+    public String play(String text) {
+        lock.lock();
+        try {
+            if (!status.equals(ONGOING)) {
+                return null;
+            }
+            ChessGame scratch = SCRATCH.get();
+            game.load(scratch.getBoard().getBitBoard());
+            int move = scratch.parseMove(text);
+            if (move == Move.NONE) {
+                return null;
+            }
+            scratch.makeMove(move);
+            game.append(scratch.getBoard().getBitBoard(), move);
+            status = computeStatus(scratch);
+            return status;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getStatus() {
+        lock.lock();
+        try {
+            return status;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String toFen() {
+        lock.lock();
+        try {
+            return game.toFen();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Full game for a client that wants the Piece view, such as a UI attaching to the session
+    public ChessGame toChessGame() {
+        lock.lock();
+        try {
+            return game.toChessGame();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String computeStatus(ChessGame game) {
+        PieceColor side = game.getCurrentPlayerColor();
+        if (game.isCheckMate(side)) {
+            return side == PieceColor.WHITE ? "BLACK_WINS" : "WHITE_WINS";
+        }
+        if (game.isStalemate(side)) {
+            return "STALEMATE";
+        }
+        if (game.isThreefoldRepetition()) {
+            return "REPETITION";
+        }
+        if (game.isFiftyMoveRule()) {
+            return "FIFTY_MOVES";
+        }
+        if (game.isInsufficientMaterial()) {
+            return "INSUFFICIENT_MATERIAL";
+        }
+        return ONGOING;
+    }
+}
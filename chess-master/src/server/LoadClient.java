@@ -0,0 +1,170 @@
+package server;
+
+import game.ChessGame;
+import game.Move;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load generator for GameServer. Opens a number of connections on virtual threads, creates every game
+// before any move is played so they are all live on the server at once, then plays random legal moves
+// in all of them, one request at a time per connection. Reports the round-trip latency seen by the client
+// and the server's own move-validation latency.
+// Usage: LoadClient [--host H] [--port N] [--games N] [--connections N] [--moves N]
+public class LoadClient {
+    private final String host;
+    private final int port;
+    private final int games;
+    private final int connections;
+    private final int movesPerGame;
+    private final LatencyHistogram roundTrips = new LatencyHistogram();
+    private final AtomicLong movesPlayed = new AtomicLong();
+
+    public LoadClient(String host, int port, int games, int connections, int movesPerGame) {
+        this.host = host;
+        this.port = port;
+        this.games = games;
+        this.connections = Math.max(1, Math.min(connections, games));
+        this.movesPerGame = movesPerGame;
+    }
+
+    public void run() throws Exception {
+        CountDownLatch created = new CountDownLatch(connections);
+        long start;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> results = new ArrayList<>();
+            for (int c = 0; c < connections; c++) {
+                int share = games / connections + (c < games % connections ? 1 : 0);
+                long seed = c;
+                results.add(executor.submit(() -> {
+                    play(share, new SplittableRandom(seed), created);
+                    return null;
+                }));
+            }
+            created.await();
+            start = System.nanoTime();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games on %d connections: %d moves in %.2f s (%.0f moves/s)%n",
+                games, connections, movesPlayed.get(), seconds, movesPlayed.get() / seconds);
+        System.out.println("Client round trip: " + roundTrips);
+        try (Connection connection = new Connection(host, port)) {
+            System.out.println("Server validation: " + connection.request("STATS"));
+        }
+    }
+
+    private void play(int gameCount, SplittableRandom random, CountDownLatch created) throws IOException {
+        try (Connection connection = new Connection(host, port)) {
+            String[] ids = new String[gameCount];
+            ChessGame[] mirrors = new ChessGame[gameCount];
+            try {
+                for (int i = 0; i < gameCount; i++) {
+                    ids[i] = connection.expectOk(connection.request("NEW"));
+                    mirrors[i] = new ChessGame();
+                }
+            } finally {
+                created.countDown();
+            }
+            try {
+                created.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // Round-robin over this connection's games so they all progress together
+            int[] moves = new int[256];
+            boolean[] finished = new boolean[gameCount];
+            for (int ply = 0; ply < movesPerGame; ply++) {
+                for (int i = 0; i < gameCount; i++) {
+                    if (finished[i]) {
+                        continue;
+                    }
+                    int count = mirrors[i].generateLegalMoves(moves);
+                    int move = moves[random.nextInt(count)];
+                    long sent = System.nanoTime();
+                    String status = connection.expectOk(connection.request("MOVE " + ids[i] + " " + Move.toString(move)));
+                    roundTrips.record(System.nanoTime() - sent);
+                    movesPlayed.incrementAndGet();
+                    mirrors[i].makeMove(move);
+                    finished[i] = !status.equals(GameSession.ONGOING);
+                }
+            }
+            for (String id : ids) {
+                connection.request("CLOSE " + id);
+            }
+        }
+    }
+
+    private static final class Connection implements AutoCloseable {
+        final Socket socket;
+        final BufferedReader in;
+        final BufferedWriter out;
+
+        Connection(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+        }
+
+        String request(String line) throws IOException {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new IOException("Server closed the connection");
+            }
+            return reply;
+        }
+
+        String expectOk(String reply) {
+            if (!reply.startsWith("OK ")) {
+                throw new UncheckedIOException(new IOException("Unexpected reply: " + reply));
+            }
+            return reply.substring(3);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = GameServer.DEFAULT_PORT;
+        int games = 10_000;
+        int connections = 200;
+        int moves = 40;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                case "--connections": connections = Integer.parseInt(args[++i]); break;
+                case "--moves": moves = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        new LoadClient(host, port, games, connections, moves).run();
+    }
+}
@@ -1,10 +1,18 @@
 package ui;
 
+import engine.OpeningBook;
+import engine.Search;
+import engine.SearchLimits;
+import engine.Tablebase;
+import engine.TranspositionTable;
 import game.ChessBoard;
 import game.ChessGame;
+import game.CompactGame;
+import game.Move;
 import pieces.*;
 import utils.PieceColor;
 import utils.PlayerManager;
+import utils.PlayerStore;
 import utils.Position;
 import javax.swing.*;
 import java.awt.*;
@@ -13,21 +21,31 @@ import java.awt.event.MouseEvent;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.io.InputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import javax.imageio.ImageIO;
 
 public class ChessGameGUI extends JFrame {
     private final ChessSquareComponent[][] squares = new ChessSquareComponent[8][8];
     private final ChessGame game = new ChessGame();
+    // Allocated the first time the computer moves
+    private TranspositionTable searchTable;
+    private final OpeningBook openingBook = OpeningBook.openIfExists(Paths.get("data", "book.bin"));
+    private final Tablebase tablebase = new Tablebase(Paths.get("data", "tablebases"));
     private final Map<Class<? extends Piece>, Map<PieceColor, ImageIcon>> pieceImageMap = new HashMap<>();
     private static final int SQUARE_SIZE = 64;
     private static final Color LIGHT_SQUARE_COLOR = new Color(255, 255, 255);
     private static final Color DARK_SQUARE_COLOR = new Color(0, 0, 0);
+    private static final long COMPUTER_MOVE_MILLIS = 1000;
     private ImageIcon whiteMarkerIcon;
     private ImageIcon blackMarkerIcon;
     private String player1;
     private String player2;
+    private JCheckBoxMenuItem computerItem;
+    private JCheckBoxMenuItem hangingItem;
+    private boolean computerThinking;
 
     public ChessGameGUI(String[] players) {
         this.player1 = players[0];
@@ -132,6 +150,7 @@ public class ChessGameGUI extends JFrame {
                 squares[row][col].setMoveMarker(false);
             }
         }
+        showHangingPieces();
         revalidate();
         repaint();
         System.out.println("Board refresh complete");
@@ -139,6 +158,9 @@ public class ChessGameGUI extends JFrame {
 
     private void handleSquareClick(int row, int col) {
         System.out.println("Square clicked: (" + row + ", " + col + ")");
+        if (computerThinking) {
+            return;
+        }
         boolean moveResult = game.handleSquareSelection(row, col);
         System.out.println("Move result: " + moveResult);
         clearMoveMarkers();
@@ -147,6 +169,7 @@ public class ChessGameGUI extends JFrame {
             refreshBoard();
             checkGameState();
             checkGameOver();
+            startComputerMoveIfNeeded();
         } else if (game.isPieceSelected()) {
             System.out.println("Showing legal moves");
             showLegalMoves(new Position(row, col));
@@ -169,6 +192,21 @@ public class ChessGameGUI extends JFrame {
         }
     }
 
+    // Marks the pieces of the side to move that the opponent can win material by capturing
+    private void showHangingPieces() {
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                squares[row][col].setHangingMarker(false);
+            }
+        }
+        if (hangingItem == null || !hangingItem.isSelected()) {
+            return;
+        }
+        for (Position position : game.getHangingPieces(game.getCurrentPlayerColor())) {
+            squares[position.getRow()][position.getColumn()].setHangingMarker(true);
+        }
+    }
+
     private void clearMoveMarkers() {
         for (int row = 0; row < 8; row++) {
             for (int col = 0; col < 8; col++) {
@@ -185,17 +223,29 @@ public class ChessGameGUI extends JFrame {
         resetItem.addActionListener(e -> resetGame());
         gameMenu.add(resetItem);
 
+        computerItem = new JCheckBoxMenuItem("Computer plays Black");
+        computerItem.addActionListener(e -> startComputerMoveIfNeeded());
+        gameMenu.add(computerItem);
+
+        hangingItem = new JCheckBoxMenuItem("Show Hanging Pieces");
+        hangingItem.addActionListener(e -> showHangingPieces());
+        gameMenu.add(hangingItem);
+
         JMenuItem showPlayersItem = new JMenuItem("Show Players");
         showPlayersItem.addActionListener(e -> {
-            List<String> allPlayers = PlayerManager.getPlayers();
-            StringBuilder playersList = new StringBuilder("Players who played:\n");
-            for (String player : allPlayers) {
-                playersList.append(player).append("\n");
+            List<PlayerStore.Stats> leaderboard = PlayerManager.getLeaderboard(50);
+            StringBuilder playersList = new StringBuilder("Players by rating:\n");
+            for (PlayerStore.Stats stats : leaderboard) {
+                playersList.append(stats).append("\n");
             }
             JOptionPane.showMessageDialog(this, playersList.toString(), "Player List", JOptionPane.INFORMATION_MESSAGE);
         });
         gameMenu.add(showPlayersItem);
 
+        JMenuItem recomputeItem = new JMenuItem("Recompute Ratings");
+        recomputeItem.addActionListener(e -> recomputeRatings(recomputeItem));
+        gameMenu.add(recomputeItem);
+
         JMenuItem backToMenuItem = new JMenuItem("Back to Menu");
         backToMenuItem.addActionListener(e -> {
             dispose();
@@ -211,6 +261,76 @@ public class ChessGameGUI extends JFrame {
         setJMenuBar(menuBar);
     }
 
+    // The search runs on a copy of the game in the background so the board stays responsive
+    private void startComputerMoveIfNeeded() {
+        if (!computerItem.isSelected() || computerThinking || game.getCurrentPlayerColor() != PieceColor.BLACK) {
+            return;
+        }
+        computerThinking = true;
+        if (searchTable == null) {
+            searchTable = new TranspositionTable(Search.DEFAULT_TABLE_MB);
+        }
+        TranspositionTable table = searchTable;
+        ChessGame snapshot = new ChessGame(game);
+        long searchedPosition = game.positionKey();
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                // Book moves are played straight away; the search only starts once the game leaves the book
+                if (openingBook != null) {
+                    int bookMove = openingBook.bestMove(snapshot.getBoard().getBitBoard());
+                    if (bookMove != Move.NONE) {
+                        return bookMove;
+                    }
+                }
+                Search search = new Search(snapshot, table);
+                search.setTablebase(tablebase);
+                return search.search(SearchLimits.time(COMPUTER_MOVE_MILLIS)).getBestMove();
+            }
+
+            @Override
+            protected void done() {
+                computerThinking = false;
+                try {
+                    int move = get();
+                    if (move != Move.NONE && game.positionKey() == searchedPosition) {
+                        game.makeMove(move);
+                        refreshBoard();
+                        checkGameState();
+                        checkGameOver();
+                    }
+                } catch (Exception e) {
+                    System.err.println("Computer move failed: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    // Replays every recorded game in the background; games can still be finished and recorded meanwhile
+    private void recomputeRatings(JMenuItem item) {
+        item.setEnabled(false);
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                PlayerManager.recomputeRatings();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                item.setEnabled(true);
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(ChessGameGUI.this, "Ratings recomputed from all recorded games.", "Recompute Ratings", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    System.err.println("Recomputing ratings failed: " + cause.getMessage());
+                    JOptionPane.showMessageDialog(ChessGameGUI.this, "Recomputing ratings failed: " + cause.getMessage(), "Recompute Ratings", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
     private void closeGame() {
         int response = JOptionPane.showConfirmDialog(
                 this,
@@ -236,12 +356,22 @@ public class ChessGameGUI extends JFrame {
             PieceColor winnerColor = (currentPlayerColor == PieceColor.WHITE) ? PieceColor.BLACK : PieceColor.WHITE;
             String winner = (winnerColor == PieceColor.WHITE) ? player1 : player2;
             JOptionPane.showMessageDialog(this, winner + " wins by checkmate!");
-            PlayerManager.recordGameResult(winner, (winner.equals(player1) ? player2 : player1));
+            PlayerManager.recordGameResultAsync(winner, (winner.equals(player1) ? player2 : player1), false, CompactGame.of(game));
             resetGame();
         } else if (game.isStalemate(currentPlayerColor)) {
-            JOptionPane.showMessageDialog(this, "The game is a draw by stalemate!");
-            PlayerManager.recordGameResult(player1, player2, true);
-            resetGame();
+            endInDraw("stalemate");
+        } else if (game.isThreefoldRepetition()) {
+            endInDraw("threefold repetition");
+        } else if (game.isFiftyMoveRule()) {
+            endInDraw("the fifty-move rule");
+        } else if (game.isInsufficientMaterial()) {
+            endInDraw("insufficient material");
         }
     }
+
+    private void endInDraw(String reason) {
+        JOptionPane.showMessageDialog(this, "The game is a draw by " + reason + "!");
+        PlayerManager.recordGameResultAsync(player1, player2, true, CompactGame.of(game));
+        resetGame();
+    }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import javax.swing.*;
 import java.awt.*;
 
 public class ChessSquareComponent extends JPanel {
+    private static final Color HANGING_MARKER_COLOR = new Color(220, 40, 40);
     private final int row;
     private final int col;
     private final Color color;
@@ -11,6 +12,7 @@ public class ChessSquareComponent extends JPanel {
     private ImageIcon pieceImage;
     private final ImageIcon markerIcon;
     private boolean showMoveMarker;
+    private boolean showHangingMarker;
 
     public ChessSquareComponent(int row, int col, Color color, int size, ImageIcon markerIcon) {
         this.row = row;
@@ -59,6 +61,11 @@ public class ChessSquareComponent extends JPanel {
         repaint();
     }
 
+    public void setHangingMarker(boolean show) {
+        showHangingMarker = show;
+        repaint();
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
@@ -68,6 +75,11 @@ public class ChessSquareComponent extends JPanel {
         if (showMoveMarker && markerIcon != null) {
             markerIcon.paintIcon(this, g, (size - markerIcon.getIconWidth()) / 2, (size - markerIcon.getIconHeight()) / 2);
         }
+        if (showHangingMarker) {
+            g.setColor(HANGING_MARKER_COLOR);
+            g.drawRect(1, 1, size - 3, size - 3);
+            g.drawRect(2, 2, size - 5, size - 5);
+        }
     }
 
     private Component findComponentByName(String name) {
@@ -1,5 +1,7 @@
 package ui;
 
+import utils.PlayerStore;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
@@ -73,11 +75,14 @@ public class LoginScreen extends JFrame {
             public void actionPerformed(ActionEvent e) {
                 String player1 = player1Field.getText().trim();
                 String player2 = player2Field.getText().trim();
-                if (!player1.isEmpty() && !player2.isEmpty()) {
+                if (player1.isEmpty() || player2.isEmpty()) {
+                    JOptionPane.showMessageDialog(LoginScreen.this, "Please enter names for both players.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                } else if (!PlayerStore.isValidName(player1) || !PlayerStore.isValidName(player2)) {
+                    // Longer names could not be stored with the players' statistics
+                    JOptionPane.showMessageDialog(LoginScreen.this, "Player names can be at most " + PlayerStore.MAX_NAME_BYTES + " bytes long.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                } else {
                     dispose();
                     SwingUtilities.invokeLater(() -> new ChessGameGUI(new String[]{player1, player2}));
-                } else {
-                    JOptionPane.showMessageDialog(LoginScreen.this, "Please enter names for both players.", "Input Error", JOptionPane.ERROR_MESSAGE);
                 }
             }
         });
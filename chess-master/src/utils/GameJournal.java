@@ -0,0 +1,488 @@
+package utils;
+
+import game.CompactGame;
+import game.PositionCodec;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Append-only binary log of finished games. After an 8-byte header ("CGJ1" and a version) every record is
+//   payload length (4) | CRC-32 of the payload (4) | payload
+// and a payload is: time in epoch milliseconds (8), result (1), both player names (2-byte length and UTF-8
+// each), the start position as PositionCodec bytes (28), the move count (4) and the packed moves (4 each).
+// Records are written by one thread: whatever has queued up while the previous batch was being synced goes
+// out in one write and one fsync, and every caller in the batch is released together (group commit).
+// On open, the file is scanned and anything after the last complete record with a good checksum, such as
+// a write torn by a crash, is cut off. A reader that keeps a checkpoint, like PlayerStore, can open the
+// journal at the offset it has seen up to and only be handed the entries after it.
+public class GameJournal implements Closeable {
+    public static final int FIRST_WON = 0;
+    public static final int DRAW = 1;
+    public static final int SECOND_WON = 2;
+
+    private static final int MAGIC = 0x43474A31;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD = 1 << 20;
+    private static final int MAX_BATCH = 4096;
+
+    private static final Pending CLOSE = new Pending(null);
+
+    private final Path path;
+    private final FileChannel channel;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final Listener listener;
+    // Orders appends against close, so nothing is queued behind CLOSE
+    private final Object appendLock = new Object();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private long size;
+    private volatile long entryCount;
+    private volatile long syncCount;
+    private volatile boolean closed;
+
+    private GameJournal(Path path, FileChannel channel, long size, long entryCount, Listener listener) {
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+        this.entryCount = entryCount;
+        this.listener = listener;
+        this.writer = new Thread(this::writeLoop, "game-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Opens or creates a journal, passing every intact entry to the consumer before any new one is written
+    public static GameJournal open(Path path, Consumer<Entry> recovered) throws IOException {
+        return open(path, 0, recovered == null ? null : (entry, end) -> recovered.accept(entry));
+    }
+
+    // Opens or creates a journal, trusting everything before the record boundary from (anything below the
+    // header size means the first record). The listener gets the intact entries after it, and then, on the
+    // writer thread, every new entry once it is on disk, always in journal order.
+    public static GameJournal open(Path path, long from, Listener listener) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long fileSize = channel.size();
+            if (from > Math.max(fileSize, HEADER_SIZE)) {
+                throw new IllegalArgumentException("Offset " + from + " is past the end of " + path);
+            }
+            if (fileSize < HEADER_SIZE) {
+                // New file, or a crash before the header was complete
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                channel.force(true);
+                return new GameJournal(path, channel.position(HEADER_SIZE), HEADER_SIZE, 0, listener);
+            }
+
+            long[] count = new long[1];
+            long end = scan(channel, path, from, (entry, next) -> {
+                count[0]++;
+                if (listener != null) {
+                    listener.durable(entry, next);
+                }
+            });
+            if (end < fileSize && count[0] == 0 && from > HEADER_SIZE) {
+                // Either a torn write right after the offset or an offset that is no record boundary; only
+                // a scan from the start can tell, so nothing is cut off here
+                throw new IOException("No intact record at offset " + from + " of " + path);
+            }
+            if (end < fileSize) {
+                System.err.println("Game journal " + path + ": dropping " + (fileSize - end) + " bytes after the last intact record");
+                channel.truncate(end);
+                channel.force(true);
+            }
+            return new GameJournal(path, channel.position(end), end, count[0], listener);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Passes the intact entries after the record boundary from to the listener without opening the journal
+    // for writing, so it can run while another thread appends. Returns the offset after the last one.
+    public static long read(Path path, long from, Listener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (from > Math.max(channel.size(), HEADER_SIZE)) {
+                throw new IllegalArgumentException("Offset " + from + " is past the end of " + path);
+            }
+            return scan(channel, path, from, listener);
+        }
+    }
+
+    private static long scan(FileChannel channel, Path path, long from, Listener listener) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not a game journal: " + path);
+            }
+        }
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a game journal: " + path);
+        }
+        long end = Math.max(from, HEADER_SIZE);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(end)), 1 << 16));
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[256];
+        try {
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > MAX_PAYLOAD) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                in.readFully(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                Entry entry = Entry.decode(ByteBuffer.wrap(payload, 0, length));
+                if (entry == null) {
+                    break;
+                }
+                end += RECORD_HEADER_SIZE + length;
+                listener.durable(entry, end);
+            }
+        } catch (EOFException e) {
+            // A record cut short by the end of the file
+        }
+        return end;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Bytes of intact records written so far
+    public long getSize() {
+        return size;
+    }
+
+    // Entries found on open, after the offset it was opened at, plus those written since
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    // Number of fsyncs so far; with many concurrent writers it grows much more slowly than the entry count
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    // Queues an entry; the future completes once it is on disk
+    public CompletableFuture<Void> append(Entry entry) {
+        Pending pending = new Pending(entry);
+        synchronized (appendLock) {
+            if (closed) {
+                pending.done.completeExceptionally(new IOException("Game journal is closed"));
+                return pending.done;
+            }
+            queue.add(pending);
+        }
+        return pending.done;
+    }
+
+    // Appends an entry and waits until it is on disk
+    public void record(Entry entry) throws IOException {
+        try {
+            append(entry).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while recording a game", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            if (batch.remove(CLOSE)) {
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        try {
+            buffer.clear();
+            for (Pending pending : batch) {
+                encode(pending.entry);
+                pending.end = size + buffer.position();
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            size = channel.position();
+            entryCount += batch.size();
+            syncCount++;
+            for (Pending pending : batch) {
+                if (listener != null) {
+                    try {
+                        listener.durable(pending.entry, pending.end);
+                    } catch (RuntimeException e) {
+                        System.err.println("Game journal listener failed: " + e);
+                    }
+                }
+                pending.done.complete(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Cut off whatever part of the batch made it out, so later records follow the last good one
+            try {
+                channel.truncate(size);
+                channel.position(size);
+            } catch (IOException ignored) {
+                // Recovery on the next open removes the partial batch instead
+            }
+            for (Pending pending : batch) {
+                pending.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void encode(Entry entry) {
+        byte[] first = entry.player1.getBytes(StandardCharsets.UTF_8);
+        byte[] second = entry.player2.getBytes(StandardCharsets.UTF_8);
+        int length = entry.payloadLength;
+        if (buffer.remaining() < RECORD_HEADER_SIZE + length) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + RECORD_HEADER_SIZE + length));
+            buffer.flip();
+            buffer = larger.put(buffer);
+        }
+        int recordStart = buffer.position();
+        buffer.position(recordStart + RECORD_HEADER_SIZE);
+        buffer.putLong(entry.timestamp).put((byte) entry.result)
+                .putShort((short) first.length).put(first)
+                .putShort((short) second.length).put(second)
+                .put(entry.start).putInt(entry.moves.length);
+        for (int move : entry.moves) {
+            buffer.putInt(move);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(recordStart + RECORD_HEADER_SIZE, length));
+        buffer.putInt(recordStart, length).putInt(recordStart + 4, (int) crc.getValue());
+    }
+
+    // Writes out everything already queued, then closes the file
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(CLOSE);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private static final class Pending {
+        final Entry entry;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        long end;
+
+        Pending(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    public interface Listener {
+        // Called with an entry that is on disk and the journal size up to and including it
+        void durable(Entry entry, long end);
+    }
+
+    // One finished game
+    public static final class Entry {
+        private final long timestamp;
+        private final String player1;
+        private final String player2;
+        private final int result;
+        private final byte[] start;
+        private final int[] moves;
+        private final int payloadLength;
+
+        // Checked here rather than when the writer encodes it, so an entry that cannot be written is turned
+        // down on the caller's thread instead of failing the batch it would have joined. Names must also fit
+        // the player store, or the game would be journaled but never counted.
+        public Entry(long timestamp, String player1, String player2, int result, byte[] start, int[] moves) {
+            this(timestamp, player1, player2, result, start, moves, true);
+        }
+
+        // Entries already in the journal are read back without the name check, as earlier versions allowed
+        // longer names
+        private Entry(long timestamp, String player1, String player2, int result, byte[] start, int[] moves, boolean checkNames) {
+            if (result < FIRST_WON || result > SECOND_WON) {
+                throw new IllegalArgumentException("Invalid result: " + result);
+            }
+            if (checkNames && (!PlayerStore.isValidName(player1) || !PlayerStore.isValidName(player2))) {
+                throw new IllegalArgumentException("Player names must be 1 to " + PlayerStore.MAX_NAME_BYTES + " bytes");
+            }
+            if (start.length != PositionCodec.ENCODED_SIZE) {
+                throw new IllegalArgumentException("Invalid start position: " + start.length + " bytes");
+            }
+            int first = player1.getBytes(StandardCharsets.UTF_8).length;
+            int second = player2.getBytes(StandardCharsets.UTF_8).length;
+            long length = 8 + 1 + 2 + first + 2 + second + start.length + 4 + 4L * moves.length;
+            if (first > Short.MAX_VALUE || second > Short.MAX_VALUE || length > MAX_PAYLOAD) {
+                throw new IllegalArgumentException("Game too large for the journal");
+            }
+            this.payloadLength = (int) length;
+            this.timestamp = timestamp;
+            this.player1 = player1;
+            this.player2 = player2;
+            this.result = result;
+            this.start = start;
+            this.moves = moves;
+        }
+
+        public Entry(String player1, String player2, int result, CompactGame game) {
+            this(System.currentTimeMillis(), player1, player2, result, game.getStartPosition(), game.getMoves());
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getPlayer1() {
+            return player1;
+        }
+
+        public String getPlayer2() {
+            return player2;
+        }
+
+        // FIRST_WON, DRAW or SECOND_WON
+        public int getResult() {
+            return result;
+        }
+
+        // PositionCodec bytes of the position the game started from
+        public byte[] getStartPosition() {
+            return start.clone();
+        }
+
+        public int getMoveCount() {
+            return moves.length;
+        }
+
+        public int getMove(int index) {
+            return moves[index];
+        }
+
+        // Null if the payload does not hold a well-formed entry
+        static Entry decode(ByteBuffer payload) {
+            try {
+                long timestamp = payload.getLong();
+                int result = payload.get();
+                String first = readName(payload);
+                String second = readName(payload);
+                byte[] start = new byte[PositionCodec.ENCODED_SIZE];
+                payload.get(start);
+                int count = payload.getInt();
+                if (count < 0 || count * 4 != payload.remaining() || result < FIRST_WON || result > SECOND_WON) {
+                    return null;
+                }
+                int[] moves = new int[count];
+                for (int i = 0; i < count; i++) {
+                    moves[i] = payload.getInt();
+                }
+                return new Entry(timestamp, first, second, result, start, moves, false);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        private static String readName(ByteBuffer payload) {
+            byte[] name = new byte[payload.getShort()];
+            payload.get(name);
+            return new String(name, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Appends games from many threads at once and reports the throughput and how many fsyncs it took.
+    // Usage: GameJournal <file> [--threads N] [--games N]
+    public static void main(String[] args) throws Exception {
+        int threads = 64;
+        int games = 100_000;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        long[] recovered = new long[1];
+        long start = System.nanoTime();
+        GameJournal journal = open(Paths.get(args[0]), entry -> recovered[0]++);
+        System.out.printf("Recovered %d games in %d ms%n", recovered[0], (System.nanoTime() - start) / 1_000_000L);
+
+        CompactGame game = new CompactGame();
+        Entry entry = new Entry("white", "black", DRAW, game);
+        int perThread = games / threads;
+        start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        journal.record(entry);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        long written = (long) perThread * threads;
+        System.out.printf("%d games from %d threads in %.2f s (%.0f games/s), %d fsyncs, %.1f games per fsync%n",
+                written, threads, seconds, written / seconds, journal.getSyncCount(),
+                (double) written / Math.max(1, journal.getSyncCount()));
+        journal.close();
+    }
+}
@@ -0,0 +1,96 @@
+package utils;
+
+// Glicko-2 rating update (Glickman, "Example of the Glicko-2 system"). Ratings and deviations are on the
+// familiar Glicko scale (1500 / 350 for a new player) and converted internally. PlayerStore rates every game
+// as its own rating period, which keeps updates incremental at the cost of never inflating the deviation of
+// players who stop playing.
+public final class Glicko2 {
+    // Constrains how fast the volatility can change; Glickman suggests 0.3 to 1.2
+    public static final double TAU = 0.5;
+
+    private static final double SCALE = 173.7178;
+    private static final double EPSILON = 0.000001;
+
+    private Glicko2() {
+    }
+
+    // New rating, deviation and volatility of a player after a rating period with the given games. Scores
+    // are 1 for a win, 0.5 for a draw and 0 for a loss; with no games only the deviation grows.
+    public static double[] rate(double rating, double deviation, double volatility,
+                                double[] opponentRatings, double[] opponentDeviations, double[] scores) {
+        double mu = (rating - 1500) / SCALE;
+        double phi = deviation / SCALE;
+        if (scores.length == 0) {
+            return new double[] {rating, Math.sqrt(phi * phi + volatility * volatility) * SCALE, volatility};
+        }
+
+        double inverseVariance = 0;
+        double improvement = 0;
+        for (int i = 0; i < scores.length; i++) {
+            double g = g(opponentDeviations[i] / SCALE);
+            double expected = expected(mu, (opponentRatings[i] - 1500) / SCALE, g);
+            inverseVariance += g * g * expected * (1 - expected);
+            improvement += g * (scores[i] - expected);
+        }
+        double variance = 1 / inverseVariance;
+        double delta = variance * improvement;
+
+        double sigma = volatility(phi, volatility * volatility, variance, delta);
+        double phiStar = Math.sqrt(phi * phi + sigma * sigma);
+        double newPhi = 1 / Math.sqrt(1 / (phiStar * phiStar) + inverseVariance);
+        double newMu = mu + newPhi * newPhi * improvement;
+        return new double[] {newMu * SCALE + 1500, newPhi * SCALE, sigma};
+    }
+
+    // Expected score against one opponent
+    public static double expectedScore(double rating, double opponentRating, double opponentDeviation) {
+        return expected((rating - 1500) / SCALE, (opponentRating - 1500) / SCALE, g(opponentDeviation / SCALE));
+    }
+
+    private static double g(double phi) {
+        return 1 / Math.sqrt(1 + 3 * phi * phi / (Math.PI * Math.PI));
+    }
+
+    private static double expected(double mu, double opponentMu, double g) {
+        return 1 / (1 + Math.exp(-g * (mu - opponentMu)));
+    }
+
+    // Solves for the new volatility with the Illinois variant of regula falsi, as in step 5 of the paper
+    private static double volatility(double phi, double sigma2, double variance, double delta) {
+        double a = Math.log(sigma2);
+        double phi2 = phi * phi;
+        double delta2 = delta * delta;
+        double lower = a;
+        double upper;
+        if (delta2 > phi2 + variance) {
+            upper = Math.log(delta2 - phi2 - variance);
+        } else {
+            int k = 1;
+            while (f(a - k * TAU, a, delta2, phi2, variance) < 0) {
+                k++;
+            }
+            upper = a - k * TAU;
+        }
+        double fLower = f(lower, a, delta2, phi2, variance);
+        double fUpper = f(upper, a, delta2, phi2, variance);
+        while (Math.abs(upper - lower) > EPSILON) {
+            double c = lower + (lower - upper) * fLower / (fUpper - fLower);
+            double fC = f(c, a, delta2, phi2, variance);
+            if (fC * fUpper <= 0) {
+                lower = upper;
+                fLower = fUpper;
+            } else {
+                fLower /= 2;
+            }
+            upper = c;
+            fUpper = fC;
+        }
+        return Math.exp(lower / 2);
+    }
+
+    private static double f(double x, double a, double delta2, double phi2, double variance) {
+        double ex = Math.exp(x);
+        double d = phi2 + variance + ex;
+        return ex * (delta2 - phi2 - variance - ex) / (2 * d * d) - (x - a) / (TAU * TAU);
+    }
+}
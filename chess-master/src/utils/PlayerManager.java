@@ -1,68 +1,272 @@
 package utils;
 
+import game.CompactGame;
+
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class PlayerManager {
     private static final String DATA_DIR = "data";
+    // Written by earlier versions; imported once when the player store is created
     private static final String RESULTS_FILE = "chess_results.txt";
-    private static Set<String> players = new HashSet<>();
+    private static final String JOURNAL_FILE = "games.journal";
+    private static final String STORE_FILE = "players.db";
+    private static volatile Path dataDir = Paths.get(DATA_DIR);
+    private static volatile PlayerStore store;
+    private static GameJournal journal;
+    private static volatile boolean opened;
 
     static {
+        Runtime.getRuntime().addShutdownHook(new Thread(PlayerManager::close));
+    }
+
+    // The files are opened on first use. The store remembers how far into the journal its counts go, so only
+    // games recorded after that are replayed; if the two disagree, or the store is unreadable, it is rebuilt
+    // from the journal. Once open, this does not take the lock, so it never waits for a recomputation.
+    private static void open() {
+        if (!opened) {
+            openFiles();
+        }
+    }
+
+    private static synchronized void openFiles() {
+        if (opened) {
+            return;
+        }
         createDataDirectoryIfNotExists();
-        loadPlayers();
+        Path journalPath = dataDir.resolve(JOURNAL_FILE);
+        try {
+            try {
+                store = openStore(false);
+                journal = GameJournal.open(journalPath, store.getJournalOffset(), PlayerManager::count);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Rebuilding the player store from the game journal: " + e.getMessage());
+                if (store != null) {
+                    store.close();
+                }
+                store = openStore(true);
+                journal = GameJournal.open(journalPath, 0, PlayerManager::count);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to open player data: " + e.getMessage());
+        }
+        opened = true;
+    }
+
+    // Closes the player data and opens the given directory on next use, so tests can work on their own files
+    static void setDataDirectory(Path directory) {
+        close();
+        synchronized (PlayerManager.class) {
+            store = null;
+            journal = null;
+            dataDir = directory;
+            opened = false;
+        }
+    }
+
+    private static PlayerStore openStore(boolean rebuild) throws IOException {
+        Path path = dataDir.resolve(STORE_FILE);
+        if (rebuild) {
+            Files.deleteIfExists(path);
+        }
+        boolean created = !Files.exists(path);
+        PlayerStore opened = PlayerStore.open(path);
+        if (created) {
+            importResultsFile(opened);
+        }
+        return opened;
+    }
+
+    // Called in journal order for every game, both those replayed on open and those just recorded
+    private static synchronized void count(GameJournal.Entry entry, long end) {
+        count(store, entry, end);
+    }
+
+    // Games the store already covers are skipped, so a game handed over twice is only counted once
+    private static void count(PlayerStore target, GameJournal.Entry entry, long end) {
+        if (end <= target.getJournalOffset()) {
+            return;
+        }
+        try {
+            target.recordResult(entry.getPlayer1(), entry.getPlayer2(), entry.getResult());
+            target.setJournalOffset(end);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error updating player statistics: " + e.getMessage());
+        }
+    }
+
+    // Rebuilds every count and rating by replaying the results file and the whole journal into a new store,
+    // then swaps it in. The replay streams the journal without holding any lock, so games can be recorded
+    // meanwhile; only the few recorded during it are replayed again with recording paused, before the swap.
+    public static void recomputeRatings() throws IOException {
+        open();
+        if (store == null || journal == null) {
+            throw new IOException("No player data");
+        }
+        Path rebuildPath = dataDir.resolve(STORE_FILE + ".rebuild");
+        Files.deleteIfExists(rebuildPath);
+        PlayerStore rebuilt = PlayerStore.open(rebuildPath);
+        try {
+            importResultsFile(rebuilt);
+            long end = GameJournal.read(journal.getPath(), 0, (entry, next) -> count(rebuilt, entry, next));
+            synchronized (PlayerManager.class) {
+                GameJournal.read(journal.getPath(), end, (entry, next) -> count(rebuilt, entry, next));
+                // Players who were added but never finished a game
+                for (String name : store.getNames()) {
+                    rebuilt.add(name);
+                }
+                rebuilt.close();
+                replaceStore(rebuildPath);
+            }
+        } finally {
+            rebuilt.close();
+            Files.deleteIfExists(rebuildPath);
+        }
+    }
+
+    // Moves a closed store file over the current one and opens it. If the move fails the old file is still in
+    // place and is opened again, so the players keep being served from it.
+    static synchronized void replaceStore(Path replacement) throws IOException {
+        Path path = store.getPath();
+        store.close();
+        store = null;
+        try {
+            Files.move(replacement, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            store = PlayerStore.open(path);
+        }
+    }
+
+    private static void close() {
+        try {
+            // Not under the lock: the journal's writer may be waiting for it to count its last games
+            if (journal != null) {
+                journal.close();
+            }
+            synchronized (PlayerManager.class) {
+                if (store != null) {
+                    store.close();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing player data: " + e.getMessage());
+        }
     }
 
     private static void createDataDirectoryIfNotExists() {
         try {
-            Files.createDirectories(Paths.get(DATA_DIR));
+            Files.createDirectories(dataDir);
         } catch (IOException e) {
             System.err.println("Failed to create data directory: " + e.getMessage());
         }
     }
 
-    private static void loadPlayers() {
-        Path filePath = Paths.get(DATA_DIR, RESULTS_FILE);
+    // Lines look like "alice vs bob,alice won,<date>" or "alice vs bob,Draw,<date>"
+    private static void importResultsFile(PlayerStore target) {
+        Path filePath = dataDir.resolve(RESULTS_FILE);
         if (Files.exists(filePath)) {
             try (BufferedReader reader = Files.newBufferedReader(filePath)) {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     String[] parts = line.split(",");
-                    if (parts.length >= 2) {
-                        players.add(parts[0].trim());
-                        players.add(parts[1].trim());
+                    String[] names = parts[0].split(" vs ");
+                    if (parts.length < 2 || names.length != 2) {
+                        continue;
+                    }
+                    String player1 = names[0].trim();
+                    String player2 = names[1].trim();
+                    String result = parts[1].trim();
+                    if (result.equals("Draw")) {
+                        target.recordResult(player1, player2, GameJournal.DRAW);
+                    } else if (result.equals(player1 + " won")) {
+                        target.recordResult(player1, player2, GameJournal.FIRST_WON);
                     }
                 }
-            } catch (IOException e) {
-                System.err.println("Error reading players from file: " + e.getMessage());
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error importing results from file: " + e.getMessage());
             }
         }
     }
 
-    public static void addPlayers(String... newPlayers) {
-        players.addAll(Arrays.asList(newPlayers));
+    public static synchronized void addPlayers(String... newPlayers) {
+        open();
+        if (store == null) {
+            return;
+        }
+        for (String player : newPlayers) {
+            try {
+                store.add(player);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error adding player: " + e.getMessage());
+            }
+        }
     }
 
     public static List<String> getPlayers() {
-        return new ArrayList<>(players);
+        open();
+        PlayerStore current = store;
+        return current == null ? Collections.emptyList() : current.getNames();
+    }
+
+    // Null for a player with no record
+    public static PlayerStore.Stats getStats(String player) {
+        open();
+        PlayerStore current = store;
+        return current == null ? null : current.get(player);
+    }
+
+    // The highest rated players, best first
+    public static List<PlayerStore.Stats> getLeaderboard(int limit) {
+        open();
+        PlayerStore current = store;
+        return current == null ? Collections.emptyList() : current.getLeaderboard(limit);
     }
 
     public static void recordGameResult(String winner, String loser) {
-        recordGameResult(winner, loser, false);
+        recordGameResult(winner, loser, false, null);
     }
-    
-    // The data package saves game results for persistence
+
     public static void recordGameResult(String player1, String player2, boolean isDraw) {
-        String result = isDraw ? "Draw" : player1 + " won";
-        String resultLine = player1 + " vs " + player2 + "," + result + "," + new Date();
+        recordGameResult(player1, player2, isDraw, null);
+    }
 
-        Path filePath = Paths.get(DATA_DIR, RESULTS_FILE);
+    // The data package saves game results for persistence. Returns once the game is on disk and counted;
+    // results recorded at the same time from other threads share one fsync.
+    public static void recordGameResult(String player1, String player2, boolean isDraw, CompactGame game) {
         try {
-            Files.write(filePath, (resultLine + System.lineSeparator()).getBytes(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-            System.out.println("Game result recorded successfully.");
-        } catch (IOException e) {
-            System.err.println("Error recording game result: " + e.getMessage());
+            recordGameResultAsync(player1, player2, isDraw, game).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Already reported
         }
     }
+
+    // Queues the game and returns at once, for callers such as the Swing event thread that must not wait for
+    // the fsync or for a recomputation holding the lock. The future completes once the game is on disk and
+    // counted; failures are reported here and complete it exceptionally.
+    public static CompletableFuture<Void> recordGameResultAsync(String player1, String player2, boolean isDraw, CompactGame game) {
+        open();
+        CompletableFuture<Void> done;
+        if (journal == null) {
+            done = CompletableFuture.failedFuture(new IOException("no game journal"));
+        } else {
+            int result = isDraw ? GameJournal.DRAW : GameJournal.FIRST_WON;
+            try {
+                done = journal.append(new GameJournal.Entry(player1, player2, result, game != null ? game : new CompactGame()));
+            } catch (IllegalArgumentException e) {
+                done = CompletableFuture.failedFuture(e);
+            }
+        }
+        return done.whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                System.out.println("Game result recorded successfully.");
+            } else {
+                System.err.println("Error recording game result: " + failure.getMessage());
+            }
+        });
+    }
 }
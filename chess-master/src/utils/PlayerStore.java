@@ -0,0 +1,484 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Per-player results and ratings in one memory-mapped file, so opening it costs the same however many games
+// have been played and a result only touches the two players' records. Layout:
+//   header (32): magic "CPS1", version, player count, record capacity, journal offset (8), state, unused
+//   index: 2 * capacity ints, an open-addressing hash table from name to record number + 1 (0 = empty)
+//   leaderboard: capacity ints, record numbers by descending rating
+//   records: capacity * RECORD_SIZE bytes, in the order players were added
+// and a record is: name length (1), UTF-8 name (47), wins, losses, draws (4 each), leaderboard position (4),
+// Glicko-2 rating, rating deviation and volatility (8 each). Every game is rated as it is counted and the
+// two players are moved along the leaderboard to their new places, usually only a few slots, so reading a
+// rank or the top of the table never sorts. The journal offset is how far into the GameJournal the counts
+// go. The file is grown by writing a copy with twice the capacity and moving it over the old one.
+// The mapped pages reach the disk in no particular order, so after an OS crash the offset could be on disk
+// without the counts it covers, or the other way round. The state guards against that: it is forced to DIRTY
+// before the first change after a flush, and set back to CLEAN only once every page has been forced, so a
+// store that was not flushed after its last change is refused on open and can be rebuilt from the journal.
+public class PlayerStore implements Closeable {
+    public static final int MAX_NAME_BYTES = 47;
+    public static final double INITIAL_RATING = 1500;
+    public static final double INITIAL_DEVIATION = 350;
+    public static final double INITIAL_VOLATILITY = 0.06;
+
+    private static final int MAGIC = 0x43505331;
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 32;
+    private static final int COUNT = 8;
+    private static final int CAPACITY = 12;
+    private static final int JOURNAL_OFFSET = 16;
+    private static final int STATE = 24;
+    private static final int CLEAN = 0;
+    private static final int DIRTY = 1;
+    private static final int RECORD_SIZE = 88;
+    private static final int WINS = 48;
+    private static final int LOSSES = 52;
+    private static final int DRAWS = 56;
+    private static final int POSITION = 60;
+    private static final int RATING = 64;
+    private static final int DEVIATION = 72;
+    private static final int VOLATILITY = 80;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int capacity;
+    private int count;
+    private List<String> names;
+    private boolean dirty;
+
+    private PlayerStore(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        attach(channel);
+    }
+
+    // Opens the store, creating an empty one if the file does not exist yet. A store that was changed and
+    // never flushed afterwards may have lost some of its pages, so it is refused.
+    public static PlayerStore open(Path path) throws IOException {
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return new PlayerStore(path, create(path, INITIAL_CAPACITY));
+        }
+        PlayerStore store = new PlayerStore(path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        if (store.dirty) {
+            store.channel.close();
+            throw new IOException("Player store was not closed cleanly: " + path);
+        }
+        return store;
+    }
+
+    // Whether a name fits in a record; anything that ends up in the store or the journal must pass this
+    public static boolean isValidName(String name) {
+        int length = name.getBytes(StandardCharsets.UTF_8).length;
+        return length > 0 && length <= MAX_NAME_BYTES;
+    }
+
+    private static FileChannel create(Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+        map.putInt(0, MAGIC).putInt(4, VERSION).putInt(COUNT, 0).putInt(CAPACITY, capacity).putLong(JOURNAL_OFFSET, 0)
+                .putInt(STATE, CLEAN);
+        map.force();
+        return channel;
+    }
+
+    private static long fileSize(int capacity) {
+        return HEADER_SIZE + 12L * capacity + (long) RECORD_SIZE * capacity;
+    }
+
+    private void attach(FileChannel channel) throws IOException {
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a player store: " + path);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            int capacity = header.getInt(CAPACITY);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || Integer.bitCount(capacity) != 1
+                    || channel.size() < fileSize(capacity)) {
+                throw new IOException("Not a player store: " + path);
+            }
+            this.channel = channel;
+            this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+            this.capacity = capacity;
+            this.count = map.getInt(COUNT);
+            this.names = null;
+            this.dirty = map.getInt(STATE) != CLEAN;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    // Offset of the first GameJournal record not yet counted
+    public synchronized long getJournalOffset() {
+        return map.getLong(JOURNAL_OFFSET);
+    }
+
+    public synchronized void setJournalOffset(long offset) {
+        markDirty();
+        map.putLong(JOURNAL_OFFSET, offset);
+    }
+
+    // Adds a player with no games; false if already present
+    public synchronized boolean add(String name) throws IOException {
+        if (find(name) >= 0) {
+            return false;
+        }
+        markDirty();
+        insert(name);
+        return true;
+    }
+
+    // Counts and rates one game, adding players seen for the first time. The result is one of the
+    // GameJournal codes.
+    public synchronized void recordResult(String first, String second, int result) throws IOException {
+        double score;
+        if (result == GameJournal.DRAW) {
+            score = 0.5;
+        } else if (result == GameJournal.FIRST_WON) {
+            score = 1;
+        } else if (result == GameJournal.SECOND_WON) {
+            score = 0;
+        } else {
+            throw new IllegalArgumentException("Invalid result: " + result);
+        }
+        // Checked before either player is added, so a rejected game changes nothing
+        if (!isValidName(first) || !isValidName(second)) {
+            throw new IllegalArgumentException("Player names must be 1 to " + MAX_NAME_BYTES + " bytes");
+        }
+        markDirty();
+        int a = findOrInsert(first);
+        int b = findOrInsert(second);
+        increment(a, score == 1 ? WINS : score == 0 ? LOSSES : DRAWS);
+        increment(b, score == 0 ? WINS : score == 1 ? LOSSES : DRAWS);
+        if (a == b) {
+            return;
+        }
+
+        // Both players are rated from their ratings before the game
+        int recordA = record(a);
+        int recordB = record(b);
+        double[] ratedA = Glicko2.rate(map.getDouble(recordA + RATING), map.getDouble(recordA + DEVIATION), map.getDouble(recordA + VOLATILITY),
+                new double[] {map.getDouble(recordB + RATING)}, new double[] {map.getDouble(recordB + DEVIATION)}, new double[] {score});
+        double[] ratedB = Glicko2.rate(map.getDouble(recordB + RATING), map.getDouble(recordB + DEVIATION), map.getDouble(recordB + VOLATILITY),
+                new double[] {map.getDouble(recordA + RATING)}, new double[] {map.getDouble(recordA + DEVIATION)}, new double[] {1 - score});
+        setRating(a, ratedA);
+        setRating(b, ratedB);
+        reposition(a);
+        reposition(b);
+    }
+
+    // Null for a player that is not in the store
+    public synchronized Stats get(String name) {
+        int index = find(name);
+        return index < 0 ? null : stats(index);
+    }
+
+    // Place on the leaderboard counting from 1, or 0 for a player that is not in the store
+    public synchronized int getRank(String name) {
+        int index = find(name);
+        return index < 0 ? 0 : map.getInt(record(index) + POSITION) + 1;
+    }
+
+    // Player at a place on the leaderboard counting from 1
+    public synchronized Stats getRanked(int rank) {
+        if (rank < 1 || rank > count) {
+            throw new IllegalArgumentException("No player ranked " + rank);
+        }
+        return stats(leader(rank - 1));
+    }
+
+    // The highest rated players, best first
+    public synchronized List<Stats> getLeaderboard(int limit) {
+        List<Stats> top = new ArrayList<>(Math.min(limit, count));
+        for (int i = 0; i < Math.min(limit, count); i++) {
+            top.add(stats(leader(i)));
+        }
+        return top;
+    }
+
+    // Names in the order players were added. The list is kept until the next player is added.
+    public synchronized List<String> getNames() {
+        if (names == null) {
+            List<String> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                list.add(name(i));
+            }
+            names = Collections.unmodifiableList(list);
+        }
+        return names;
+    }
+
+    private int findOrInsert(String name) throws IOException {
+        int index = find(name);
+        return index >= 0 ? index : insert(name);
+    }
+
+    private int find(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int mask = 2 * capacity - 1;
+        for (int slot = hash(bytes) & mask; ; slot = (slot + 1) & mask) {
+            int entry = map.getInt(HEADER_SIZE + 4 * slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (nameEquals(entry - 1, bytes)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int insert(String name) throws IOException {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Player names must be 1 to " + MAX_NAME_BYTES + " bytes: " + name);
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (count == capacity) {
+            grow();
+        }
+        int index = count;
+        int record = record(index);
+        map.put(record, (byte) bytes.length).put(record + 1, bytes);
+        map.putInt(record + WINS, 0).putInt(record + LOSSES, 0).putInt(record + DRAWS, 0)
+                .putDouble(record + RATING, INITIAL_RATING)
+                .putDouble(record + DEVIATION, INITIAL_DEVIATION)
+                .putDouble(record + VOLATILITY, INITIAL_VOLATILITY);
+        link(bytes, index);
+        place(index, index);
+        // The count goes last, so a record is never counted before it is complete
+        map.putInt(COUNT, ++count);
+        names = null;
+        reposition(index);
+        return index;
+    }
+
+    private void link(byte[] name, int index) {
+        int mask = 2 * capacity - 1;
+        int slot = hash(name) & mask;
+        while (map.getInt(HEADER_SIZE + 4 * slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        map.putInt(HEADER_SIZE + 4 * slot, index + 1);
+    }
+
+    // Copies every record into a file with twice the capacity and swaps it in
+    private void grow() throws IOException {
+        Path copy = path.resolveSibling(path.getFileName() + ".tmp");
+        PlayerStore larger = new PlayerStore(copy, create(copy, capacity * 2));
+        for (int i = 0; i < count; i++) {
+            byte[] record = new byte[RECORD_SIZE];
+            map.get(record(i), record);
+            larger.map.put(larger.record(i), record);
+            larger.map.putInt(larger.board(i), map.getInt(board(i)));
+            byte[] name = new byte[record[0]];
+            System.arraycopy(record, 1, name, 0, name.length);
+            larger.link(name, i);
+        }
+        larger.map.putLong(JOURNAL_OFFSET, map.getLong(JOURNAL_OFFSET)).putInt(COUNT, count).putInt(STATE, map.getInt(STATE));
+        larger.map.force();
+        larger.channel.close();
+        channel.close();
+        Files.move(copy, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        attach(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    private int record(int index) {
+        return HEADER_SIZE + 12 * capacity + RECORD_SIZE * index;
+    }
+
+    private int board(int position) {
+        return HEADER_SIZE + 8 * capacity + 4 * position;
+    }
+
+    private int leader(int position) {
+        return map.getInt(board(position));
+    }
+
+    private void place(int index, int position) {
+        map.putInt(board(position), index);
+        map.putInt(record(index) + POSITION, position);
+    }
+
+    private double rating(int index) {
+        return map.getDouble(record(index) + RATING);
+    }
+
+    // A game that tells little, such as a near-certain win, lets the deviation grow by the volatility; it is
+    // capped at that of a new player
+    private void setRating(int index, double[] rated) {
+        int record = record(index);
+        map.putDouble(record + RATING, rated[0]).putDouble(record + DEVIATION, Math.min(rated[1], INITIAL_DEVIATION))
+                .putDouble(record + VOLATILITY, rated[2]);
+    }
+
+    // Moves a player whose rating changed up or down the leaderboard, shifting the players passed by one
+    private void reposition(int index) {
+        double rating = rating(index);
+        int position = map.getInt(record(index) + POSITION);
+        while (position > 0 && rating(leader(position - 1)) < rating) {
+            place(leader(position - 1), position);
+            position--;
+        }
+        while (position < count - 1 && rating(leader(position + 1)) > rating) {
+            place(leader(position + 1), position);
+            position++;
+        }
+        place(index, position);
+    }
+
+    private boolean nameEquals(int index, byte[] name) {
+        int record = record(index);
+        if (map.get(record) != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (map.get(record + 1 + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String name(int index) {
+        int record = record(index);
+        byte[] name = new byte[map.get(record)];
+        map.get(record + 1, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private Stats stats(int index) {
+        int record = record(index);
+        return new Stats(name(index), map.getInt(record + WINS), map.getInt(record + LOSSES), map.getInt(record + DRAWS),
+                map.getInt(record + POSITION) + 1, map.getDouble(record + RATING), map.getDouble(record + DEVIATION),
+                map.getDouble(record + VOLATILITY));
+    }
+
+    private void increment(int index, int field) {
+        int offset = record(index) + field;
+        map.putInt(offset, map.getInt(offset) + 1);
+    }
+
+    private static int hash(byte[] name) {
+        int h = 1;
+        for (byte b : name) {
+            h = 31 * h + b;
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Must be on disk before any other page is changed
+    private void markDirty() {
+        if (!dirty) {
+            map.putInt(STATE, DIRTY);
+            map.force(0, HEADER_SIZE);
+            dirty = true;
+        }
+    }
+
+    // Writes the mapped pages out and marks the store clean, so it can be opened again after a crash
+    public synchronized void flush() {
+        map.force();
+        if (dirty) {
+            map.putInt(STATE, CLEAN);
+            map.force(0, HEADER_SIZE);
+            dirty = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        flush();
+        channel.close();
+    }
+
+    // Snapshot of one player's record
+    public static final class Stats {
+        private final String name;
+        private final int wins;
+        private final int losses;
+        private final int draws;
+        private final int rank;
+        private final double rating;
+        private final double deviation;
+        private final double volatility;
+
+        Stats(String name, int wins, int losses, int draws, int rank, double rating, double deviation, double volatility) {
+            this.name = name;
+            this.wins = wins;
+            this.losses = losses;
+            this.draws = draws;
+            this.rank = rank;
+            this.rating = rating;
+            this.deviation = deviation;
+            this.volatility = volatility;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getLosses() {
+            return losses;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        public int getGames() {
+            return wins + losses + draws;
+        }
+
+        // Place on the leaderboard when the snapshot was taken, counting from 1
+        public int getRank() {
+            return rank;
+        }
+
+        public double getRating() {
+            return rating;
+        }
+
+        public double getDeviation() {
+            return deviation;
+        }
+
+        public double getVolatility() {
+            return volatility;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d. %s %d-%d-%d (%.0f \u00b1 %.0f)", rank, name, wins, losses, draws, rating, 2 * deviation);
+        }
+    }
+}
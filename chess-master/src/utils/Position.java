@@ -1,7 +1,5 @@
 package utils;
 
-import java.util.Objects;
-
 public class Position {
     private int row;
     private int column;
@@ -32,7 +30,7 @@ public class Position {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, column);
+        return row * 8 + column;
     }
 
 }
\ No newline at end of file